@@ -0,0 +1,17 @@
+package datum.travels.application.port.output;
+
+/**
+ * Puerto de salida para leer los comprobantes de los gastos
+ * La implementación por defecto es Azure Blob Storage; con blobstore.type=local
+ * se leen del sistema de archivos compartido con el servicio OCR
+ */
+public interface BlobStorePort {
+
+    /**
+     * Lee el contenido completo de un blob
+     *
+     * @param nombreBlob Nombre del blob dentro del contenedor (ej: gastos/usuario/2025/Octubre/12_factura.jpg)
+     * @return Bytes del archivo
+     */
+    byte[] leer(String nombreBlob);
+}
@@ -8,6 +8,7 @@ import datum.travels.domain.model.Gasto;
 import datum.travels.domain.model.Tarjeta;
 import datum.travels.domain.repository.GastoRepository;
 import datum.travels.infrastructure.adapter.external.ConversionMonedaService;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
@@ -37,6 +38,7 @@ public class ActualizarGastoUseCase {
     ConversionMonedaService conversionMonedaService;
 
     @Transactional
+    @WithSpan("gasto.actualizar")
     public GastoResponse execute(Long idGasto, ActualizarGastoRequest request) {
         Gasto gasto = gastoRepository.findByIdGasto(idGasto)
                 .orElseThrow(() -> new ResourceNotFoundException("Gasto no encontrado con ID: " + idGasto));
@@ -10,6 +10,7 @@ import datum.travels.domain.model.Tarjeta;
 import datum.travels.domain.repository.EventoRepository;
 import datum.travels.domain.repository.GastoRepository;
 import datum.travels.infrastructure.adapter.external.ConversionMonedaService;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
@@ -52,6 +53,7 @@ public class CrearGastoUseCase {
      * @throws ResourceNotFoundException si el evento, categoría o tarjeta no existen
      */
     @Transactional
+    @WithSpan("gasto.crear")
     public GastoResponse execute(CrearGastoRequest request) {
         
         // 1. Buscar y validar el evento
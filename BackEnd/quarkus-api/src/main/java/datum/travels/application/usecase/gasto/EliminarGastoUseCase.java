@@ -3,6 +3,7 @@ package datum.travels.application.usecase.gasto;
 import datum.travels.domain.exception.ResourceNotFoundException;
 import datum.travels.domain.model.Gasto;
 import datum.travels.domain.repository.GastoRepository;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -27,6 +28,7 @@ public class EliminarGastoUseCase {
      * @throws ResourceNotFoundException si el gasto no existe
      */
     @Transactional
+    @WithSpan("gasto.eliminar")
     public void execute(Long idGasto) {
         
         // Verificar que existe
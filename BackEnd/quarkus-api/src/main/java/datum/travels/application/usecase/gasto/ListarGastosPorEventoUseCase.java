@@ -3,6 +3,7 @@ package datum.travels.application.usecase.gasto;
 import datum.travels.application.dto.gasto.GastoResponse;
 import datum.travels.domain.model.Gasto;
 import datum.travels.domain.repository.GastoRepository;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
@@ -29,6 +30,7 @@ public class ListarGastosPorEventoUseCase {
      * @param idEvento ID del evento
      * @return Lista de gastos del evento
      */
+    @WithSpan("gasto.listar-por-evento")
     public List<GastoResponse> execute(Long idEvento) {
         List<Gasto> gastos = gastoRepository.findByIdEvento(idEvento);
         
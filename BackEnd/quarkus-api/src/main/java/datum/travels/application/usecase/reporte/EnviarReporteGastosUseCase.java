@@ -9,6 +9,7 @@ import datum.travels.domain.model.Evento;
 import datum.travels.domain.model.Gasto;
 import datum.travels.domain.repository.EventoRepository;
 import datum.travels.domain.repository.GastoRepository;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -53,6 +54,7 @@ public class EnviarReporteGastosUseCase {
      * @return Respuesta con confirmación del envío
      */
     @Transactional
+    @WithSpan("reporte.enviar")
     public EnviarReporteResponse execute(Long idEvento, EnviarReporteRequest request) {
         
         LOG.infof("Iniciando envío de reporte para evento %d", idEvento);
@@ -4,7 +4,10 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import datum.travels.shared.exception.KeycloakIntegrationException;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.instrumentation.httpclient.JavaHttpClientTelemetry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
@@ -16,10 +19,13 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Cliente mínimo para invocar el API de administración de Keycloak.
@@ -53,18 +59,40 @@ public class KeycloakAdminClient {
     @ConfigProperty(name = "keycloak.admin.auth-realm", defaultValue = "master")
     String adminAuthRealm;
 
+    @ConfigProperty(name = "keycloak.admin.connect-timeout-ms", defaultValue = "5000")
+    long connectTimeoutMillis;
+
+    @ConfigProperty(name = "keycloak.admin.request-timeout-ms", defaultValue = "15000")
+    long requestTimeoutMillis;
+
     private static final Logger LOG = Logger.getLogger(KeycloakAdminClient.class);
 
     private final ObjectMapper objectMapper;
+    private final OpenTelemetry openTelemetry;
     private HttpClient httpClient;
+    private ExecutorService executor;
 
-    public KeycloakAdminClient(ObjectMapper objectMapper) {
+    public KeycloakAdminClient(ObjectMapper objectMapper, OpenTelemetry openTelemetry) {
         this.objectMapper = objectMapper;
+        this.openTelemetry = openTelemetry;
     }
 
     @PostConstruct
     void init() {
-        this.httpClient = HttpClient.newBuilder().build();
+        // Un solo cliente para todo el API de administracion: HTTP/2 si Keycloak lo negocia, conexiones
+        // reutilizadas e hilos virtuales. Span hijo y cabecera traceparent en cada llamada
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("keycloak-admin-", 0).factory());
+        this.httpClient = JavaHttpClientTelemetry.builder(openTelemetry).build()
+                .newHttpClient(HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                        .executor(executor)
+                        .build());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
     }
 
     /**
@@ -316,8 +344,13 @@ public class KeycloakAdminClient {
     }
 
     private HttpResponse<String> send(HttpRequest request) {
+        // Sin timeout propio un Keycloak colgado bloquearia la peticion del usuario indefinidamente
+        HttpRequest bounded = request.timeout().isPresent() ? request
+                : HttpRequest.newBuilder(request, (name, value) -> true)
+                        .timeout(Duration.ofMillis(requestTimeoutMillis))
+                        .build();
         try {
-            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            return httpClient.send(bounded, HttpResponse.BodyHandlers.ofString());
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new KeycloakIntegrationException("La llamada a Keycloak fue interrumpida", e);
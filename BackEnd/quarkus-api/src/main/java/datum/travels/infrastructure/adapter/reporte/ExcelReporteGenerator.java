@@ -1,14 +1,12 @@
 package datum.travels.infrastructure.adapter.reporte;
 
-import com.azure.storage.blob.BlobClient;
-import com.azure.storage.blob.BlobContainerClient;
-import com.azure.storage.blob.BlobServiceClient;
-import com.azure.storage.blob.BlobServiceClientBuilder;
-import com.azure.storage.common.StorageSharedKeyCredential;
+import datum.travels.application.port.output.BlobStorePort;
 import datum.travels.application.port.output.ReporteGeneratorPort;
 import datum.travels.domain.model.Evento;
 import datum.travels.domain.model.Gasto;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -31,16 +29,15 @@ public class ExcelReporteGenerator implements ReporteGeneratorPort {
     private static final Logger LOG = Logger.getLogger(ExcelReporteGenerator.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     
-    @ConfigProperty(name = "azure.storage.account-name")
-    String azureAccountName;
+    @Inject
+    BlobStorePort blobStore;
     
-    @ConfigProperty(name = "azure.storage.account-key")
-    String azureAccountKey;
-    
-    @ConfigProperty(name = "azure.storage.container-name")
+    // Solo para extraer el nombre del blob de URLs antiguas sin blob_name
+    @ConfigProperty(name = "azure.storage.container-name", defaultValue = "ocr-files")
     String azureContainerName;
     
     @Override
+    @WithSpan("reporte.generar-excel")
     public ByteArrayOutputStream generarReporteExcel(Evento evento, List<Gasto> gastos) {
         LOG.infof("Generando reporte Excel para evento %d", evento.getIdEvento());
         
@@ -117,9 +114,12 @@ public class ExcelReporteGenerator implements ReporteGeneratorPort {
                 row.createCell(8).setCellValue(numeroTarjetaMasked);
                 
                 // Agregar imagen del comprobante
-                if (gasto.getBlobUrl() != null && !gasto.getBlobUrl().isEmpty()) {
+                boolean tieneBlob = gasto.getBlobName() != null && !gasto.getBlobName().isEmpty();
+                if (tieneBlob || (gasto.getBlobUrl() != null && !gasto.getBlobUrl().isEmpty())) {
                     try {
-                        insertarImagenComprobante(workbook, sheet, gasto.getBlobUrl(), rowNum, 9);
+                        // Gastos antiguos solo guardaban la URL: el nombre del blob se extrae de ella
+                        String nombreBlob = tieneBlob ? gasto.getBlobName() : extraerNombreBlob(gasto.getBlobUrl());
+                        insertarImagenComprobante(workbook, sheet, nombreBlob, rowNum, 9);
                     } catch (Exception e) {
                         LOG.warnf(e, "No se pudo insertar imagen para gasto %d: %s", 
                             gasto.getIdGasto(), e.getMessage());
@@ -168,6 +168,7 @@ public class ExcelReporteGenerator implements ReporteGeneratorPort {
     }
     
     @Override
+    @WithSpan("reporte.generar-pdf")
     public ByteArrayOutputStream generarReportePDF(Evento evento, List<Gasto> gastos) {
         // Por ahora, delegamos a Excel hasta implementar PDF con otra librería
         LOG.warn("Generación de PDF no implementada, usando Excel");
@@ -229,43 +230,24 @@ public class ExcelReporteGenerator implements ReporteGeneratorPort {
     }
     
     /**
-     * Descarga una imagen desde Azure Blob Storage usando credenciales y la inserta en el Excel
+     * Lee una imagen del almacén de comprobantes (Azure o local) y la inserta en el Excel
      * @param workbook El workbook de Excel
      * @param sheet La hoja donde insertar la imagen
-     * @param imageUrl URL de Azure Blob Storage
+     * @param blobName Nombre del blob del comprobante
      * @param rowIndex Índice de la fila
      * @param colIndex Índice de la columna
      */
-    private void insertarImagenComprobante(Workbook workbook, Sheet sheet, String imageUrl, int rowIndex, int colIndex) throws IOException {
+    private void insertarImagenComprobante(Workbook workbook, Sheet sheet, String blobName, int rowIndex, int colIndex) throws IOException {
         InputStream inputStream = null;
         try {
-            LOG.infof("Descargando imagen desde Azure: %s", imageUrl);
-            
-            // Extraer el nombre del blob desde la URL
-            // URL ejemplo: https://storageocr2025.blob.core.windows.net/ocr-files/gastos%2FAna%20Rodriguez%2F...
-            String blobName = extraerNombreBlob(imageUrl);
-            
-            // Crear cliente de Azure con credenciales
-            StorageSharedKeyCredential credential = new StorageSharedKeyCredential(azureAccountName, azureAccountKey);
-            String endpoint = String.format("https://%s.blob.core.windows.net", azureAccountName);
+            LOG.infof("Leyendo imagen del almacén de comprobantes: %s", blobName);
             
-            BlobServiceClient blobServiceClient = new BlobServiceClientBuilder()
-                .endpoint(endpoint)
-                .credential(credential)
-                .buildClient();
-            
-            BlobContainerClient containerClient = blobServiceClient.getBlobContainerClient(azureContainerName);
-            BlobClient blobClient = containerClient.getBlobClient(blobName);
-            
-            // Descargar el blob
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            blobClient.downloadStream(outputStream);
-            byte[] imageBytes = outputStream.toByteArray();
+            byte[] imageBytes = blobStore.leer(blobName);
             
             LOG.infof("Imagen descargada: %d bytes", imageBytes.length);
             
             // Siempre usar JPEG para .jfif y variantes de JPEG
-            int pictureType = determinarTipoImagen(imageUrl);
+            int pictureType = determinarTipoImagen(blobName);
             
             // Agregar imagen al workbook
             int pictureIdx = workbook.addPicture(imageBytes, pictureType);
@@ -295,7 +277,7 @@ public class ExcelReporteGenerator implements ReporteGeneratorPort {
             LOG.infof("Imagen insertada exitosamente en fila %d, columna %d", rowIndex, colIndex);
             
         } catch (Exception e) {
-            LOG.errorf(e, "Error al descargar/insertar imagen desde %s: %s", imageUrl, e.getMessage());
+            LOG.errorf(e, "Error al descargar/insertar imagen desde %s: %s", blobName, e.getMessage());
             throw new IOException("Error al procesar imagen: " + e.getMessage(), e);
         } finally {
             if (inputStream != null) {
@@ -0,0 +1,56 @@
+package datum.travels.infrastructure.adapter.storage;
+
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.common.StorageSharedKeyCredential;
+import datum.travels.application.port.output.BlobStorePort;
+import datum.travels.domain.exception.ResourceNotFoundException;
+import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import io.quarkus.arc.DefaultBean;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Adapter: comprobantes en Azure Blob Storage
+ * El cliente del contenedor se crea una sola vez y se reutiliza en todas las lecturas
+ */
+@ApplicationScoped
+@DefaultBean
+public class AzureBlobStoreAdapter implements BlobStorePort {
+
+    @ConfigProperty(name = "azure.storage.account-name")
+    String accountName;
+
+    @ConfigProperty(name = "azure.storage.account-key")
+    String accountKey;
+
+    @ConfigProperty(name = "azure.storage.container-name")
+    String containerName;
+
+    private BlobContainerClient containerClient;
+
+    @PostConstruct
+    void init() {
+        containerClient = new BlobServiceClientBuilder()
+                .endpoint(String.format("https://%s.blob.core.windows.net", accountName))
+                .credential(new StorageSharedKeyCredential(accountName, accountKey))
+                .buildClient()
+                .getBlobContainerClient(containerName);
+    }
+
+    @Override
+    @WithSpan("azure.blob.read")
+    public byte[] leer(@SpanAttribute("blob.name") String nombreBlob) {
+        try {
+            return containerClient.getBlobClient(nombreBlob).downloadContent().toBytes();
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == 404) {
+                throw new ResourceNotFoundException("Blob no encontrado: " + nombreBlob, e);
+            }
+            throw e;
+        }
+    }
+}
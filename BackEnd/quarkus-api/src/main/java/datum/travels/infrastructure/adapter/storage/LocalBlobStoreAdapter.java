@@ -0,0 +1,46 @@
+package datum.travels.infrastructure.adapter.storage;
+
+import datum.travels.application.port.output.BlobStorePort;
+import datum.travels.domain.exception.ResourceNotFoundException;
+import datum.travels.shared.exception.TechnicalException;
+import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Adapter: comprobantes en el sistema de archivos local (on-prem y pruebas sin la nube)
+ * Usa la misma estructura que el LocalBlobStore del servicio OCR: root/{shard}/{nombreBlob},
+ * con el shard como dos dígitos hex de nombreBlob.hashCode(). Ambos servicios deben apuntar
+ * al mismo blobstore.local.root
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "blobstore.type", stringValue = "local")
+public class LocalBlobStoreAdapter implements BlobStorePort {
+
+    @ConfigProperty(name = "blobstore.local.root", defaultValue = "data/blobs")
+    String root;
+
+    @Override
+    @WithSpan("local.blob.read")
+    public byte[] leer(@SpanAttribute("blob.name") String nombreBlob) {
+        Path base = Path.of(root).toAbsolutePath().normalize();
+        Path path = base.resolve(String.format("%02x", nombreBlob.hashCode() & 0xff)).resolve(nombreBlob).normalize();
+        if (!path.startsWith(base)) {
+            throw new IllegalArgumentException("Nombre de blob inválido: " + nombreBlob);
+        }
+        try {
+            return Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            throw new ResourceNotFoundException("Blob no encontrado: " + nombreBlob, e);
+        } catch (IOException e) {
+            throw new TechnicalException("Error al leer el blob " + nombreBlob, e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package datum.travels.infrastructure.config;
+
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.quarkus.arc.lookup.LookupIfProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+/**
+ * Exportación de trazas a archivo para entornos sin collector OTLP.
+ * Los spans se escriben como OTLP/JSON en la categoría de log del exportador,
+ * que application.properties redirige al handler de archivo "otel-traces".
+ */
+@ApplicationScoped
+public class TracingConfig {
+
+    @Produces
+    @Singleton
+    @LookupIfProperty(name = "app.tracing.file.enabled", stringValue = "true")
+    SpanProcessor fileSpanProcessor() {
+        return BatchSpanProcessor.builder(OtlpJsonLoggingSpanExporter.create()).build();
+    }
+}
@@ -0,0 +1,149 @@
+package org.acme.ocrquarkus;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Lectura en streaming de las respuestas de analisis de Azure Document Intelligence.
+ * Solo recorre {@code status}, {@code analyzeResult.pages[].lines[].content} y
+ * {@code analyzeResult.documents[0].fields}; el resto (poligonos, palabras, spans) se salta
+ * sin construir arboles JSON.
+ */
+public final class AnalyzeResultReader {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final ObjectMapper M = new ObjectMapper();
+
+    private AnalyzeResultReader() {
+    }
+
+    /** Valor de {@code status} en la raiz; se detiene en cuanto lo encuentra. */
+    public static String readStatus(String json) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return "";
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                if ("status".equals(field)) {
+                    return p.getValueAsString("");
+                }
+                p.skipChildren();
+            }
+        }
+        return "";
+    }
+
+    /** Concatena {@code analyzeResult.pages[].lines[].content}, una linea por renglon. */
+    public static String extractLines(String json) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (JsonParser p = FACTORY.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return "";
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("analyzeResult".equals(field) && value == JsonToken.START_OBJECT) {
+                    readAnalyzeResult(p, text);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Arbol de {@code analyzeResult.documents[0].fields} del modelo {@code prebuilt-receipt}: solo se
+     * materializa ese objeto y la lectura termina en cuanto se obtiene.
+     *
+     * @return null si la respuesta no trae ningun documento.
+     */
+    public static JsonNode readFirstDocumentFields(String json) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("analyzeResult".equals(field) && value == JsonToken.START_OBJECT) {
+                    return readDocumentsFields(p);
+                }
+                p.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    private static JsonNode readDocumentsFields(JsonParser p) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("documents".equals(field) && value == JsonToken.START_ARRAY) {
+                return p.nextToken() == JsonToken.START_OBJECT ? readFields(p) : null;
+            }
+            p.skipChildren();
+        }
+        return null;
+    }
+
+    private static JsonNode readFields(JsonParser p) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("fields".equals(field) && value == JsonToken.START_OBJECT) {
+                return M.readTree(p);
+            }
+            p.skipChildren();
+        }
+        return M.createObjectNode();
+    }
+
+    private static void readAnalyzeResult(JsonParser p, StringBuilder text) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("pages".equals(field) && value == JsonToken.START_ARRAY) {
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    readPage(p, text);
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void readPage(JsonParser p, StringBuilder text) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("lines".equals(field) && value == JsonToken.START_ARRAY) {
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    readLine(p, text);
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void readLine(JsonParser p, StringBuilder text) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("content".equals(field)) {
+                text.append(p.getValueAsString("")).append("\n");
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.acme.ocrquarkus;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.ocrquarkus.http.Deadline;
+import org.acme.ocrquarkus.http.HttpClients;
+import org.acme.ocrquarkus.http.ManagedHttpClient;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consulta de forma no bloqueante todas las operaciones de analisis pendientes en Azure Document Intelligence.
+ * Un unico scheduler reprograma cada {@code operation-location} respetando {@code Retry-After},
+ * de modo que cientos de escaneos en vuelo no ocupan un hilo dormido cada uno.
+ */
+@ApplicationScoped
+public class AzureOperationPoller {
+
+    private static final Logger LOG = Logger.getLogger(AzureOperationPoller.class);
+
+    private static final long INITIAL_POLL_DELAY_MILLIS = 1000;
+    private static final long POLL_DELAY_STEP_MILLIS = 250;
+    private static final long MAX_POLL_DELAY_MILLIS = 4000;
+    private static final long MIN_RETRY_AFTER_MILLIS = 250;
+    private static final long MAX_RETRY_AFTER_MILLIS = 30_000;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ManagedHttpClient client;
+    private final Duration timeout;
+    private final OcrMetrics metrics;
+
+    public AzureOperationPoller(
+            @ConfigProperty(name = "azure.docintel.poll.threads", defaultValue = "2") int threads,
+            @ConfigProperty(name = "azure.docintel.poll.timeout-seconds", defaultValue = "300") int timeoutSeconds,
+            HttpClients httpClients,
+            OcrMetrics metrics
+    ) {
+        this.metrics = metrics;
+        AtomicInteger counter = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(Math.max(threads, 1), r -> {
+            Thread t = new Thread(r, "azure-poller-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        // Mismo cliente (y conexiones HTTP/2) que el envio del analisis en OcrService
+        this.client = httpClients.get(HttpClients.AZURE_DOCINTEL);
+        this.timeout = Duration.ofSeconds(Math.max(timeoutSeconds, 1));
+    }
+
+    /**
+     * Registra una operacion y devuelve un futuro que se completa con el cuerpo JSON final
+     * cuando Azure reporta {@code succeeded}, o excepcionalmente con {@link OperationFailedException}.
+     * Si la peticion trae un {@link Deadline} mas corto que el timeout de polling, se respeta ese.
+     * El primer poll espera el {@code Retry-After} del 202 de envio ({@code accepted}) si Azure lo manda.
+     */
+    public CompletableFuture<String> await(String operationLocation, String apiKey, HttpResponse<?> accepted) {
+        long deadlineNanos = System.nanoTime() + timeout.toNanos();
+        Deadline requestDeadline = Deadline.current().orElse(null);
+        if (requestDeadline != null && requestDeadline.deadlineNanos() - deadlineNanos < 0) {
+            deadlineNanos = requestDeadline.deadlineNanos();
+        }
+        PendingOperation op = new PendingOperation(URI.create(operationLocation), apiKey,
+                deadlineNanos, Context.current());
+        long startNanos = System.nanoTime();
+        op.future.whenComplete((result, error) ->
+                metrics.azurePolling(op.attempts, System.nanoTime() - startNanos, error == null));
+        schedule(op, retryAfterOr(accepted, INITIAL_POLL_DELAY_MILLIS));
+        return op.future;
+    }
+
+    private void schedule(PendingOperation op, long delayMillis) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(op.deadlineNanos - System.nanoTime());
+        if (remaining <= 0) {
+            long waitedSeconds = (long) Math.ceil(op.waitedMillis / 1000.0);
+            metrics.remoteFailure(OcrMetrics.AZURE_DOCINTEL, "timeout");
+            op.future.completeExceptionally(new OperationFailedException(
+                    "Azure Document Intelligence did not finish within the expected time (" + waitedSeconds + "s)",
+                    504, null));
+            return;
+        }
+        long delay = Math.min(delayMillis, remaining);
+        op.waitedMillis += delay;
+        // Cada GET de polling es un span hijo de la operacion que lo registro
+        scheduler.schedule(op.context.wrap(() -> poll(op)), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(PendingOperation op) {
+        HttpRequest get = HttpRequest.newBuilder()
+                .uri(op.uri)
+                .timeout(Duration.ofSeconds(60))
+                .header("Ocp-Apim-Subscription-Key", op.apiKey)
+                .GET()
+                .build();
+        op.attempts++;
+        client.sendAsync(get, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((res, error) -> {
+                    if (error != null) {
+                        metrics.remoteFailure(OcrMetrics.AZURE_DOCINTEL, "io");
+                        op.future.completeExceptionally(error);
+                        return;
+                    }
+                    try {
+                        handle(op, res);
+                    } catch (Exception e) {
+                        op.future.completeExceptionally(e);
+                    }
+                });
+    }
+
+    private void handle(PendingOperation op, HttpResponse<String> res) throws Exception {
+        int pollStatus = res.statusCode();
+        if (pollStatus >= 400) {
+            metrics.remoteFailure(OcrMetrics.AZURE_DOCINTEL, String.valueOf(pollStatus));
+        }
+        if (pollStatus == 429) {
+            LOG.debugf("Azure Document Intelligence limito el polling de %s (429)", op.uri);
+            schedule(op, nextDelay(op, res));
+            return;
+        }
+        if (pollStatus >= 400) {
+            throw new OperationFailedException(
+                    "Azure Document Intelligence returned an error while polling the analyze operation",
+                    pollStatus, res.body());
+        }
+        String status = AnalyzeResultReader.readStatus(res.body());
+        if ("succeeded".equalsIgnoreCase(status)) {
+            Span.fromContext(op.context).setAttribute("azure.docintel.poll_attempts", op.attempts);
+            op.future.complete(res.body());
+            return;
+        }
+        if ("failed".equalsIgnoreCase(status)) {
+            throw new OperationFailedException(
+                    "Azure Document Intelligence reported a failed status for the analyze operation",
+                    pollStatus, res.body());
+        }
+        schedule(op, nextDelay(op, res));
+    }
+
+    /** Usa {@code Retry-After} si Azure lo envia; si no, la rampa de 1s a 4s de siempre. */
+    private long nextDelay(PendingOperation op, HttpResponse<?> res) {
+        return retryAfterOr(res, Math.min(INITIAL_POLL_DELAY_MILLIS + op.attempts * POLL_DELAY_STEP_MILLIS,
+                MAX_POLL_DELAY_MILLIS));
+    }
+
+    private static long retryAfterOr(HttpResponse<?> res, long fallbackMillis) {
+        String retryAfter = res.headers().firstValue("Retry-After").orElse(null);
+        if (retryAfter != null) {
+            try {
+                long millis = (long) (Double.parseDouble(retryAfter.trim()) * 1000);
+                return Math.max(MIN_RETRY_AFTER_MILLIS, Math.min(millis, MAX_RETRY_AFTER_MILLIS));
+            } catch (NumberFormatException ignored) {
+                // Formato fecha HTTP: se usa el valor por defecto
+            }
+        }
+        return fallbackMillis;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class PendingOperation {
+        final URI uri;
+        final String apiKey;
+        final long deadlineNanos;
+        final Context context;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        // Solo se modifican desde el hilo que programa/recibe el siguiente poll, nunca en paralelo
+        volatile int attempts;
+        volatile long waitedMillis;
+
+        PendingOperation(URI uri, String apiKey, long deadlineNanos, Context context) {
+            this.uri = uri;
+            this.apiKey = apiKey;
+            this.deadlineNanos = deadlineNanos;
+            this.context = context;
+        }
+    }
+
+    /** Error remoto de Azure; {@link OcrService} lo traduce a la respuesta HTTP correspondiente. */
+    public static class OperationFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+        private final String body;
+
+        public OperationFailedException(String message, int statusCode, String body) {
+            super(message);
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.acme.ocrquarkus;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Campos estructurados del modelo {@code prebuilt-receipt} de Azure Document Intelligence
+ * (MerchantName, Total, TransactionDate) con su confianza, mapeados al JSON que consume
+ * {@code GastoService.guardarGastoDesdeJson}.
+ */
+public class AzureReceiptFields {
+
+    private static final ObjectMapper M = new ObjectMapper();
+
+    String merchant;
+    double merchantConfidence;
+    BigDecimal total;
+    String currency;
+    double totalConfidence;
+    LocalDate date;
+    double dateConfidence;
+
+    /**
+     * @param fields {@code analyzeResult.documents[0].fields}, leido con
+     *               {@link AnalyzeResultReader#readFirstDocumentFields(String)}
+     * @return null si la respuesta no trae ningun documento de recibo.
+     */
+    public static AzureReceiptFields from(JsonNode fields) {
+        if (fields == null) {
+            return null;
+        }
+        AzureReceiptFields r = new AzureReceiptFields();
+
+        JsonNode merchant = fields.path("MerchantName");
+        String name = merchant.path("valueString").asText(merchant.path("content").asText(""));
+        if (!name.isBlank()) {
+            r.merchant = name.trim();
+            r.merchantConfidence = merchant.path("confidence").asDouble(0);
+        }
+
+        JsonNode total = fields.path("Total");
+        JsonNode currency = total.path("valueCurrency");
+        JsonNode amount = currency.has("amount") ? currency.path("amount") : total.path("valueNumber");
+        if (amount.isNumber()) {
+            r.total = amount.decimalValue().setScale(2, RoundingMode.HALF_UP);
+            r.totalConfidence = total.path("confidence").asDouble(0);
+            String code = currency.path("currencyCode").asText("");
+            r.currency = code.isBlank() ? null : code;
+        }
+
+        JsonNode date = fields.path("TransactionDate");
+        String isoDate = date.path("valueDate").asText("");
+        if (!isoDate.isBlank()) {
+            try {
+                r.date = LocalDate.parse(isoDate);
+                r.dateConfidence = date.path("confidence").asDouble(0);
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+        return r;
+    }
+
+    /** Todos los campos presentes con confianza suficiente: el LLM no aporta nada. */
+    public boolean isConfident(double minConfidence) {
+        return merchantOk(minConfidence) && totalOk(minConfidence) && dateOk(minConfidence);
+    }
+
+    public String toJson() {
+        return toNode(Double.NEGATIVE_INFINITY).toString();
+    }
+
+    /**
+     * Combina la respuesta del LLM con los campos de Azure: los campos con confianza
+     * suficiente sustituyen a los del LLM. Si el LLM no devolvio JSON se usan solo los de Azure.
+     */
+    public String mergeInto(String llmJson, double minConfidence) {
+        ObjectNode llm;
+        try {
+            JsonNode parsed = M.readTree(llmJson);
+            if (!(parsed instanceof ObjectNode obj) || parsed.has("error")) {
+                return toJson();
+            }
+            llm = obj;
+        } catch (Exception e) {
+            return toJson();
+        }
+        llm.setAll(toNode(minConfidence));
+        llm.put("Origen", "azure-prebuilt-receipt+llm");
+        return llm.toString();
+    }
+
+    private ObjectNode toNode(double minConfidence) {
+        ObjectNode node = M.createObjectNode();
+        if (merchantOk(minConfidence)) {
+            node.put("NombreEmpresa", merchant);
+            node.put("Descripcion", "Compra en " + merchant);
+        }
+        if (totalOk(minConfidence)) {
+            node.put("MontoTotal", total.toPlainString());
+            if (currency != null) {
+                node.put("Moneda", currency);
+            }
+        }
+        if (dateOk(minConfidence)) {
+            node.put("Fecha", String.format("%02d/%02d/%02d",
+                    date.getDayOfMonth(), date.getMonthValue(), date.getYear() % 100));
+        }
+        ObjectNode confidence = node.putObject("ConfianzaCampos");
+        confidence.put("NombreEmpresa", merchantConfidence);
+        confidence.put("MontoTotal", totalConfidence);
+        confidence.put("Fecha", dateConfidence);
+        node.put("Origen", "azure-prebuilt-receipt");
+        return node;
+    }
+
+    private boolean merchantOk(double min) {
+        return merchant != null && merchantConfidence >= min;
+    }
+
+    private boolean totalOk(double min) {
+        return total != null && totalConfidence >= min;
+    }
+
+    private boolean dateOk(double min) {
+        return date != null && dateConfidence >= min;
+    }
+}
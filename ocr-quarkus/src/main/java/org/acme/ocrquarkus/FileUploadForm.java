@@ -0,0 +1,27 @@
+package org.acme.ocrquarkus;
+
+import org.jboss.resteasy.annotations.providers.multipart.PartType;
+import jakarta.ws.rs.FormParam;
+import jakarta.ws.rs.core.MediaType;
+
+import java.io.InputStream;
+
+/**
+ * Formulario de subida de comprobantes. A diferencia de {@link UploadForm} el archivo llega como stream
+ * y se vuelca a disco por bloques, sin materializar el comprobante completo en el heap.
+ */
+public class FileUploadForm {
+    @FormParam("file")
+    @PartType("application/octet-stream")
+    public InputStream file;
+
+    // Nombre del archivo que se guardará en Azure
+    @FormParam("filename")
+    @PartType(MediaType.TEXT_PLAIN)
+    public String filename;
+
+    // Tipo MIME del archivo (image/png, application/pdf, etc.)
+    @FormParam("contentType")
+    @PartType(MediaType.TEXT_PLAIN)
+    public String contentType;
+}
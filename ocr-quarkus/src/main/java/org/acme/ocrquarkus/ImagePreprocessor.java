@@ -0,0 +1,216 @@
+package org.acme.ocrquarkus;
+
+import io.micrometer.core.annotation.Timed;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Normaliza las fotos de recibos antes de enviarlas a Azure: aplica la orientacion EXIF,
+ * reduce al lado mayor configurado, pasa a escala de grises y re-codifica en JPEG.
+ * Los PDF y los formatos que ImageIO no sabe leer se envian sin cambios.
+ */
+@ApplicationScoped
+public class ImagePreprocessor {
+
+    private static final Logger LOG = Logger.getLogger(ImagePreprocessor.class);
+
+    private final boolean enabled;
+    private final int maxLongEdge;
+    private final boolean grayscale;
+    private final float jpegQuality;
+
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    public ImagePreprocessor(
+            @ConfigProperty(name = "ocr.preprocess.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "ocr.preprocess.max-long-edge", defaultValue = "2000") int maxLongEdge,
+            @ConfigProperty(name = "ocr.preprocess.grayscale", defaultValue = "true") boolean grayscale,
+            @ConfigProperty(name = "ocr.preprocess.jpeg-quality", defaultValue = "0.85") float jpegQuality
+    ) {
+        this.enabled = enabled;
+        this.maxLongEdge = Math.max(maxLongEdge, 256);
+        this.grayscale = grayscale;
+        this.jpegQuality = Math.min(Math.max(jpegQuality, 0.1f), 1.0f);
+    }
+
+    /**
+     * Devuelve la version optimizada de la imagen, o los bytes originales si no se pudo
+     * procesar o el resultado no es mas pequeno.
+     */
+    @WithSpan("ocr.preprocess")
+    @Timed(value = "ocr.preprocess", histogram = true)
+    public byte[] process(byte[] original) {
+        if (!enabled || original == null || original.length == 0 || isPdf(original)) {
+            return original;
+        }
+        long start = System.nanoTime();
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(original));
+            if (source == null) {
+                return original;
+            }
+            int orientation = readExifOrientation(original);
+            byte[] encoded = encodeJpeg(render(source, orientation));
+
+            boolean reoriented = orientation > 1 && orientation <= 8;
+            if (encoded.length >= original.length && !reoriented) {
+                return original;
+            }
+            Span.current().setAttribute("ocr.preprocess.bytes_in", original.length);
+            Span.current().setAttribute("ocr.preprocess.bytes_out", encoded.length);
+            long saved = bytesIn.addAndGet(original.length) - bytesOut.addAndGet(encoded.length);
+            LOG.infof("Pre-procesado OCR: %d -> %d bytes (%d ahorrados, %d acumulados) en %d ms",
+                    original.length, encoded.length, original.length - encoded.length, saved,
+                    (System.nanoTime() - start) / 1_000_000);
+            return encoded;
+        } catch (IOException | RuntimeException e) {
+            LOG.warnf(e, "No se pudo pre-procesar la imagen, se envia la original");
+            return original;
+        }
+    }
+
+    private BufferedImage render(BufferedImage source, int orientation) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        boolean swap = orientation >= 5 && orientation <= 8;
+        int orientedW = swap ? h : w;
+        int orientedH = swap ? w : h;
+
+        double scale = Math.min(1.0, (double) maxLongEdge / Math.max(orientedW, orientedH));
+        int targetW = Math.max(1, (int) Math.round(orientedW * scale));
+        int targetH = Math.max(1, (int) Math.round(orientedH * scale));
+
+        // Un solo dibujado combina orientacion y escala, sin copias intermedias a resolucion completa
+        AffineTransform transform = AffineTransform.getScaleInstance(scale, scale);
+        transform.concatenate(orientationTransform(orientation, w, h));
+
+        BufferedImage target = new BufferedImage(targetW, targetH,
+                grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetW, targetH);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private AffineTransform orientationTransform(int orientation, int w, int h) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // espejo horizontal
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // espejo vertical
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // transpuesta
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // 90 horario
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // transversa
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);   // 270 horario
+            default -> new AffineTransform();
+        };
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No hay un ImageWriter JPEG disponible");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private boolean isPdf(byte[] data) {
+        return data.length >= 4 && data[0] == '%' && data[1] == 'P' && data[2] == 'D' && data[3] == 'F';
+    }
+
+    /** Lee la etiqueta Orientation (0x0112) del IFD0 del segmento APP1/Exif; 1 si no existe. */
+    private int readExifOrientation(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.length && (data[pos] & 0xFF) == 0xFF) {
+            int marker = data[pos + 1] & 0xFF;
+            int length = ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+            if (marker == 0xDA || length < 2) {
+                return 1; // empiezan los datos de imagen
+            }
+            int segment = pos + 4;
+            if (marker == 0xE1 && segment + 6 <= data.length
+                    && data[segment] == 'E' && data[segment + 1] == 'x' && data[segment + 2] == 'i'
+                    && data[segment + 3] == 'f' && data[segment + 4] == 0 && data[segment + 5] == 0) {
+                return readTiffOrientation(data, segment + 6, pos + 2 + length);
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private int readTiffOrientation(byte[] data, int tiff, int end) {
+        end = Math.min(end, data.length);
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean little = data[tiff] == 'I' && data[tiff + 1] == 'I';
+        int ifd = tiff + readInt(data, tiff + 4, little);
+        if (ifd < tiff || ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(data, ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                return 1;
+            }
+            if (readShort(data, entry, little) == 0x0112) {
+                int value = readShort(data, entry + 8, little);
+                return (value >= 1 && value <= 8) ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private int readShort(byte[] d, int at, boolean little) {
+        return little
+                ? (d[at] & 0xFF) | ((d[at + 1] & 0xFF) << 8)
+                : ((d[at] & 0xFF) << 8) | (d[at + 1] & 0xFF);
+    }
+
+    private int readInt(byte[] d, int at, boolean little) {
+        return little
+                ? (d[at] & 0xFF) | ((d[at + 1] & 0xFF) << 8) | ((d[at + 2] & 0xFF) << 16) | ((d[at + 3] & 0xFF) << 24)
+                : ((d[at] & 0xFF) << 24) | ((d[at + 1] & 0xFF) << 16) | ((d[at + 2] & 0xFF) << 8) | (d[at + 3] & 0xFF);
+    }
+}
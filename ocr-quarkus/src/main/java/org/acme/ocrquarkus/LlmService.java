@@ -5,11 +5,21 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;   // <-- jakarta
+import jakarta.inject.Inject;
+import org.acme.ocrquarkus.http.HttpClients;
+import org.acme.ocrquarkus.http.ManagedHttpClient;
+import org.acme.ocrquarkus.resilience.Bulkhead;
+import org.acme.ocrquarkus.resilience.Bulkheads;
+import org.acme.ocrquarkus.resilience.CircuitBreakers;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -33,9 +43,19 @@ public class LlmService {
     @ConfigProperty(name = "hf.temperature", defaultValue = "0.7")
     Double defaultTemperature;
 
-    private final HttpClient http = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(20))
-            .build();
+    @Inject
+    Bulkheads bulkheads;
+
+    @Inject
+    CircuitBreakers circuitBreakers;
+
+    @Inject
+    OcrMetrics metrics;
+
+    @Inject
+    HttpClients httpClients;
+
+    private ManagedHttpClient http;
 
    private final ObjectMapper mapper = new ObjectMapper()
         .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
@@ -43,6 +63,11 @@ public class LlmService {
             JsonInclude.Value.construct(JsonInclude.Include.NON_NULL, JsonInclude.Include.ALWAYS)
         );
 
+    @PostConstruct
+    void init() {
+        http = httpClients.get(HttpClients.HF_ROUTER);
+    }
+
     /** Prompt plantilla pedido por el usuario */
     private String buildClassificationPrompt(String ocrText) {
         String plantilla =
@@ -67,7 +92,9 @@ public class LlmService {
         return plantilla;
     }
 
+    @WithSpan("llm.classify")
     public String classifyFromOcr(String ocrText, Integer maxTokens, Double temperature) throws Exception {
+        Span.current().setAttribute("llm.model", model);
         ChatRequest req = new ChatRequest();
         req.model = model;
         req.messages = List.of(
@@ -89,20 +116,64 @@ public class LlmService {
                 .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
-        HttpResponse<String> resp = http.send(httpReq, HttpResponse.BodyHandlers.ofString());
-
-        if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
-            ChatResponse cr = mapper.readValue(resp.body(), ChatResponse.class);
-            String content = null;
-            if (cr != null && cr.choices != null && !cr.choices.isEmpty()
-                    && cr.choices.get(0) != null && cr.choices.get(0).message != null) {
-                content = cr.choices.get(0).message.content;
+        // Con el circuito abierto se falla al instante en lugar de esperar los 60s del timeout
+        Bulkhead bulkhead = bulkheads.get(Bulkheads.HF_ROUTER);
+        HttpResponse<String> resp = circuitBreakers.get(CircuitBreakers.HF_ROUTER).call(() -> {
+            HttpResponse<String> r = bulkhead.call(() -> timedSend(httpReq));
+            if (r.statusCode() == 429) {
+                bulkhead.onThrottled(r.headers().firstValue("Retry-After")
+                        .map(this::parseRetryAfterMillis)
+                        .orElse(1000L));
+                throw new LlmUnavailableException(r.statusCode(), r.body());
+            }
+            if (r.statusCode() >= 500) {
+                throw new LlmUnavailableException(r.statusCode(), r.body());
             }
-            return content != null ? content.trim() : "(sin contenido)";
+            bulkhead.onSuccess();
+            return r;
+        }, e -> e instanceof IOException
+                || (e instanceof LlmUnavailableException u && u.getStatusCode() >= 500));
+
+        // Ningun error se devuelve como texto: OcrService lo intentaria parsear como el JSON del LLM
+        if (resp.statusCode() == 404) {
+            throw new LlmUnavailableException(404, "model " + model + " is not available on the router or the name is wrong");
+        }
+        if (resp.statusCode() == 401) {
+            throw new LlmUnavailableException(401, "invalid token or missing permissions for the router");
+        }
+        if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+            throw new LlmUnavailableException(resp.statusCode(), resp.body());
+        }
+        ChatResponse cr = mapper.readValue(resp.body(), ChatResponse.class);
+        if (cr != null && cr.usage != null) {
+            metrics.llmTokens(cr.usage.promptTokens, cr.usage.completionTokens);
+        }
+        String content = null;
+        if (cr != null && cr.choices != null && !cr.choices.isEmpty()
+                && cr.choices.get(0) != null && cr.choices.get(0).message != null) {
+            content = cr.choices.get(0).message.content;
+        }
+        return content != null ? content.trim() : "(sin contenido)";
+    }
+
+    private HttpResponse<String> timedSend(HttpRequest httpReq) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> r = http.send(httpReq, HttpResponse.BodyHandlers.ofString());
+            metrics.llmCall(System.nanoTime() - start, r.statusCode());
+            return r;
+        } catch (IOException e) {
+            metrics.remoteFailure(OcrMetrics.HF_ROUTER, "io");
+            throw e;
+        }
+    }
+
+    private long parseRetryAfterMillis(String value) {
+        try {
+            return (long) (Double.parseDouble(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return 1000L;
         }
-        if (resp.statusCode() == 404) return "(404) El modelo no está disponible en el router o el nombre es incorrecto: " + model;
-        if (resp.statusCode() == 401) return "(401) Token inválido o sin permisos para el router.";
-        return "Error HTTP " + resp.statusCode() + ": " + resp.body();
     }
 
     // ===== DTOs mínimos para el router chat/completions =====
@@ -127,6 +198,13 @@ public class LlmService {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class ChatResponse {
         public List<Choice> choices;
+        public Usage usage;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Usage {
+        @JsonProperty("prompt_tokens")     public Integer promptTokens;
+        @JsonProperty("completion_tokens") public Integer completionTokens;
     }
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
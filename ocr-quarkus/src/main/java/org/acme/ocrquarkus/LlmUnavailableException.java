@@ -0,0 +1,22 @@
+package org.acme.ocrquarkus;
+
+/**
+ * El router de Hugging Face no devolvio una respuesta utilizable (5xx, 429, 401, 404...): {@link OcrService}
+ * degrada a la extraccion local en lugar de parsear el error como JSON. Solo los 5xx cuentan como fallo
+ * para el circuit breaker; un 429 ya frena al bulkhead y un 401/404 es de configuracion.
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public LlmUnavailableException(int statusCode, String body) {
+        super("LLM router returned HTTP " + statusCode + (body == null || body.isBlank() ? "" : ": " + body));
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
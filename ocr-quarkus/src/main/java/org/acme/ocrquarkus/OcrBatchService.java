@@ -0,0 +1,211 @@
+package org.acme.ocrquarkus;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Procesa varios recibos en una sola peticion ({@code POST /api/ocr/batch}).
+ * Los archivos y las entradas de los ZIP se leen de uno en uno y se analizan en paralelo usando los
+ * mismos huecos que {@link OcrJobService}, asi el tope es global y no por lote; los resultados se entregan
+ * en orden de llegada, sin esperar al mas lento.
+ */
+@ApplicationScoped
+public class OcrBatchService {
+
+    private static final Logger LOG = Logger.getLogger(OcrBatchService.class);
+
+    @Inject
+    OcrService ocrService;
+
+    @Inject
+    OcrJobService ocrJobService;
+
+    @ConfigProperty(name = "ocr.batch.max-files", defaultValue = "50")
+    int maxFiles;
+
+    @ConfigProperty(name = "ocr.batch.max-file-bytes", defaultValue = "20971520")
+    long maxFileBytes;
+
+    /** Recibe cada resultado en el hilo que invoco {@link #process}, nunca en paralelo. */
+    public interface ResultSink {
+        void accept(OcrJob job) throws IOException;
+    }
+
+    public static final class BatchFile {
+        private final String name;
+        private final String contentType;
+        private final InputStream data;
+
+        public BatchFile(String name, String contentType, InputStream data) {
+            this.name = name;
+            this.contentType = contentType;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Analiza todos los archivos (expandiendo los ZIP) y entrega un {@link OcrJob} terminado por cada uno.
+     * @return numero de archivos procesados.
+     */
+    public int process(List<BatchFile> files, ResultSink sink) throws IOException {
+        Batch batch = new Batch(sink);
+        try {
+            for (BatchFile file : files) {
+                if (isZip(file)) {
+                    try (ZipInputStream zip = new ZipInputStream(file.data)) {
+                        ZipEntry entry;
+                        while ((entry = zip.getNextEntry()) != null) {
+                            if (entry.isDirectory() || isIgnoredZipEntry(entry.getName())) {
+                                continue;
+                            }
+                            if (!batch.submit(baseName(entry.getName()), zip)) {
+                                return batch.finish();
+                            }
+                        }
+                    }
+                } else {
+                    try (InputStream in = file.data) {
+                        if (!batch.submit(file.name, in)) {
+                            return batch.finish();
+                        }
+                    }
+                }
+            }
+            return batch.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch OCR interrumpido");
+        }
+    }
+
+    private final class Batch {
+        private final ResultSink sink;
+        private final BlockingQueue<OcrJob> completed = new LinkedBlockingQueue<>();
+        private int submitted;
+        private int delivered;
+
+        Batch(ResultSink sink) {
+            this.sink = sink;
+        }
+
+        /** @return false si se alcanzo el limite de archivos del lote. */
+        boolean submit(String name, InputStream in) throws IOException, InterruptedException {
+            OcrJob job = new OcrJob(String.valueOf(submitted));
+            job.fileName = name;
+            submitted++;
+
+            if (submitted > Math.max(maxFiles, 1)) {
+                job.fail(plainTextError(Response.Status.REQUEST_ENTITY_TOO_LARGE,
+                        "Batch limit of " + maxFiles + " files reached; remaining files were skipped."));
+                completed.add(job);
+                return false;
+            }
+
+            byte[] bytes;
+            try {
+                bytes = readCapped(in, name);
+            } catch (WebApplicationException e) {
+                job.fail(e);
+                completed.add(job);
+                return true;
+            }
+
+            // Espera sin sondear; cada analisis que termina deja su resultado en la cola antes de liberar
+            // el hueco, asi que al despertar se entregan con el flush de abajo
+            ocrJobService.acquireSlot();
+            job.status = OcrJob.Status.RUNNING;
+            ocrService.analyzeAsync(bytes, ocrJobService.workerExecutor())
+                    .whenComplete((result, error) -> {
+                        if (error == null) {
+                            job.succeed(result);
+                        } else {
+                            Throwable cause = job.fail(error);
+                            if (!(cause instanceof WebApplicationException)) {
+                                LOG.errorf(cause, "Error procesando %s dentro del lote OCR", name);
+                            }
+                        }
+                        completed.add(job);
+                        ocrJobService.releaseSlot();
+                    });
+            flush();
+            return true;
+        }
+
+        private void flush() throws IOException {
+            OcrJob job;
+            while ((job = completed.poll()) != null) {
+                deliver(job);
+            }
+        }
+
+        int finish() throws IOException, InterruptedException {
+            while (delivered < submitted) {
+                deliver(completed.take());
+            }
+            return delivered;
+        }
+
+        private void deliver(OcrJob job) throws IOException {
+            delivered++;
+            sink.accept(job);
+        }
+    }
+
+    private byte[] readCapped(InputStream in, String name) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxFileBytes) {
+                throw plainTextError(Response.Status.REQUEST_ENTITY_TOO_LARGE,
+                        "File " + name + " exceeds the maximum size of " + maxFileBytes + " bytes.");
+            }
+            out.write(buffer, 0, read);
+        }
+        if (total == 0) {
+            throw plainTextError(Response.Status.BAD_REQUEST, "The uploaded file is empty or unreadable.");
+        }
+        return out.toByteArray();
+    }
+
+    private boolean isZip(BatchFile file) {
+        String ct = file.contentType == null ? "" : file.contentType.toLowerCase(Locale.ROOT);
+        String name = file.name == null ? "" : file.name.toLowerCase(Locale.ROOT);
+        return ct.contains("zip") || name.endsWith(".zip");
+    }
+
+    private boolean isIgnoredZipEntry(String name) {
+        String base = baseName(name);
+        return name.startsWith("__MACOSX/") || base.startsWith(".");
+    }
+
+    private String baseName(String path) {
+        int idx = path.lastIndexOf('/');
+        return idx >= 0 ? path.substring(idx + 1) : path;
+    }
+
+    private WebApplicationException plainTextError(Response.Status status, String message) {
+        return new WebApplicationException(Response.status(status)
+                .type(MediaType.TEXT_PLAIN_TYPE)
+                .entity(message)
+                .build());
+    }
+}
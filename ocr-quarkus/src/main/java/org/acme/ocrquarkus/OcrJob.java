@@ -0,0 +1,70 @@
+package org.acme.ocrquarkus;
+
+import jakarta.ws.rs.WebApplicationException;
+
+import java.time.Instant;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Estado de un analisis OCR encolado via {@code POST /api/ocr/jobs} o de un archivo dentro de un lote.
+ */
+public class OcrJob {
+
+    public enum Status { PENDING, RUNNING, SUCCEEDED, FAILED }
+
+    public final String id;
+    /** {@code sub} del JWT de quien lo encolo; solo esa persona puede consultarlo. Null en los lotes. */
+    public final String owner;
+    public final Instant createdAt;
+    public volatile String fileName;
+
+    public volatile Status status = Status.PENDING;
+    public volatile Instant finishedAt;
+    public volatile TotalResult result;
+    public volatile String error;
+    public volatile int errorStatus;
+
+    public OcrJob(String id) {
+        this(id, null);
+    }
+
+    public OcrJob(String id, String owner) {
+        this.id = id;
+        this.owner = owner;
+        this.createdAt = Instant.now();
+    }
+
+    void succeed(TotalResult result) {
+        this.result = result;
+        this.finishedAt = Instant.now();
+        this.status = Status.SUCCEEDED;
+    }
+
+    /**
+     * Registra el error con el mismo status/mensaje que devolveria el endpoint sincrono.
+     * @return la causa real, para que el llamador decida si debe loguearla.
+     */
+    Throwable fail(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof WebApplicationException e) {
+            this.errorStatus = e.getResponse().getStatus();
+            Object entity = e.getResponse().getEntity();
+            this.error = entity != null ? entity.toString() : e.getMessage();
+        } else {
+            this.errorStatus = 500;
+            this.error = (cause.getMessage() == null || cause.getMessage().isBlank())
+                    ? "Unexpected error while processing the image."
+                    : cause.getMessage();
+        }
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+        return cause;
+    }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,197 @@
+package org.acme.ocrquarkus;
+
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta el pipeline OCR (Azure + LLM) fuera de los hilos HTTP con un numero acotado de analisis en vuelo.
+ * El cliente recibe un id de job de inmediato y consulta el estado hasta obtener el {@link TotalResult}.
+ * La espera en Azure la resuelve {@link AzureOperationPoller}; el pool ejecuta el arranque de cada job, el
+ * pre-procesado y la llamada al LLM.
+ */
+@ApplicationScoped
+public class OcrJobService {
+
+    private static final Logger LOG = Logger.getLogger(OcrJobService.class);
+
+    private final OcrService ocrService;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final BlockingQueue<Runnable> backlog;
+    private final Duration retention;
+    private final Map<String, OcrJob> jobs = new ConcurrentHashMap<>();
+
+    @Inject
+    public OcrJobService(
+            OcrService ocrService,
+            @ConfigProperty(name = "ocr.jobs.max-concurrency", defaultValue = "4") int maxConcurrency,
+            @ConfigProperty(name = "ocr.jobs.queue-capacity", defaultValue = "100") int queueCapacity,
+            @ConfigProperty(name = "ocr.jobs.retention-minutes", defaultValue = "30") int retentionMinutes
+    ) {
+        this.ocrService = ocrService;
+        this.retention = Duration.ofMinutes(Math.max(retentionMinutes, 1));
+
+        int threads = Math.max(maxConcurrency, 1);
+        this.slots = new Semaphore(threads);
+        this.backlog = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+        AtomicInteger counter = new AtomicInteger();
+        // Nunca hay mas de 'threads' analisis en vuelo, asi que la cola del pool no crece sin limite
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "ocr-job-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Encola un analisis; nunca lo arranca en el hilo que llama (el hash y el envio a Azure corren en el pool).
+     * @param owner {@code sub} del JWT de quien lo encola.
+     * @throws RejectedExecutionException si la cola de jobs esta llena.
+     */
+    public OcrJob submit(byte[] imageBytes, String owner) {
+        evictExpired();
+
+        OcrJob job = new OcrJob(UUID.randomUUID().toString(), owner);
+        jobs.put(job.id, job);
+        // Si el job espera en la cola, sus spans siguen colgando de la peticion que lo creo
+        Runnable start = Context.current().wrap(() -> run(job, imageBytes));
+        if (slots.tryAcquire()) {
+            try {
+                dispatch(start);
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.id);
+                throw e;
+            }
+        } else if (backlog.offer(start)) {
+            drain();
+        } else {
+            jobs.remove(job.id);
+            throw new RejectedExecutionException("OCR job queue is full");
+        }
+        return job;
+    }
+
+    /** Job {@code id} si lo encolo {@code owner}; el de otra persona se trata igual que uno inexistente. */
+    public Optional<OcrJob> find(String id, String owner) {
+        evictExpired();
+        return Optional.ofNullable(jobs.get(id))
+                .filter(job -> Objects.equals(job.owner, owner));
+    }
+
+    /** Se llama con un permiso de {@link #slots} ya adquirido; lo libera al terminar. */
+    private void run(OcrJob job, byte[] imageBytes) {
+        job.status = OcrJob.Status.RUNNING;
+        CompletableFuture<TotalResult> future;
+        try {
+            future = ocrService.analyzeAsync(imageBytes, executor);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((result, error) -> {
+            try {
+                if (error == null) {
+                    job.succeed(result);
+                } else {
+                    Throwable cause = job.fail(error);
+                    if (!(cause instanceof WebApplicationException)) {
+                        LOG.errorf(cause, "Error procesando el job OCR %s", job.id);
+                    }
+                }
+            } finally {
+                slots.release();
+                drain();
+            }
+        });
+    }
+
+    /** Pool compartido para los pasos bloqueantes (pre-procesado y LLM), tambien usado por los lotes. */
+    Executor workerExecutor() {
+        return executor;
+    }
+
+    /**
+     * Bloquea hasta tener uno de los huecos de analisis que comparten jobs y lotes, de modo que varios
+     * lotes a la vez no multiplican la concurrencia. Se devuelve con {@link #releaseSlot()}.
+     */
+    void acquireSlot() throws InterruptedException {
+        slots.acquire();
+    }
+
+    /** Devuelve un hueco tomado con {@link #acquireSlot()} y arranca el siguiente job encolado si lo hay. */
+    void releaseSlot() {
+        slots.release();
+        drain();
+    }
+
+    /**
+     * Arranca jobs encolados mientras haya permisos libres. Se despachan al pool y no se ejecutan aqui:
+     * si {@code analyzeAsync} completa en linea (cache), el release del job anterior volveria a llamar a
+     * drain desde dentro de este bucle y la pila creceria con cada job de la cola.
+     */
+    private void drain() {
+        while (!backlog.isEmpty() && slots.tryAcquire()) {
+            Runnable next = backlog.poll();
+            if (next == null) {
+                slots.release();
+                return;
+            }
+            try {
+                dispatch(next);
+            } catch (RejectedExecutionException e) {
+                // Solo ocurre al apagar el servicio
+                LOG.debugf("Pool OCR cerrado; se descarta un job encolado");
+                return;
+            }
+        }
+    }
+
+    /** Ejecuta un job en el pool con el permiso ya adquirido; si el pool lo rechaza devuelve el permiso. */
+    private void dispatch(Runnable start) {
+        try {
+            executor.execute(start);
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    private void evictExpired() {
+        Instant limit = Instant.now().minus(retention);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(limit));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,10 +1,27 @@
 package org.acme.ocrquarkus;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.context.Scope;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.acme.ocrquarkus.http.Deadline;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.jboss.resteasy.annotations.providers.multipart.MultipartForm;
+import org.jboss.resteasy.plugins.providers.multipart.InputPart;
+import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Path("/api/ocr")
 public class OcrResource {
@@ -12,16 +29,33 @@ public class OcrResource {
     @Inject
     OcrService ocrService;
 
+    @Inject
+    OcrJobService ocrJobService;
+
+    @Inject
+    OcrBatchService ocrBatchService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    JsonWebToken jwt;
+
+    // Plazo total de la peticion sincrona; las llamadas a Azure y al LLM recortan su timeout a lo que quede
+    @ConfigProperty(name = "ocr.request.deadline-ms", defaultValue = "300000")
+    long requestDeadlineMillis;
+
     @POST
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces(MediaType.APPLICATION_JSON)
-    public String analyze(@MultipartForm UploadForm form) {
+    public String analyze(@MultipartForm UploadForm form, @QueryParam("compact") Boolean compact) {
         if (form == null || form.file == null || form.file.length == 0) {
             throw new BadRequestException("No file was received for OCR processing.");
         }
 
+        Scope deadline = Deadline.within(Duration.ofMillis(requestDeadlineMillis));
         try {
-            return ocrService.ocr(form.file);
+            return ocrService.ocr(form.file, compactOrDefault(compact));
         } catch (WebApplicationException e) {
             throw e;
         } catch (Exception e) {
@@ -34,6 +68,110 @@ public class OcrResource {
                     .type(MediaType.TEXT_PLAIN_TYPE)
                     .build();
             throw new WebApplicationException(response);
+        } finally {
+            deadline.close();
+        }
+    }
+
+    @POST
+    @Path("/jobs")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitJob(@MultipartForm UploadForm form) {
+        if (form == null || form.file == null || form.file.length == 0) {
+            throw new BadRequestException("No file was received for OCR processing.");
+        }
+
+        try {
+            OcrJob job = ocrJobService.submit(form.file, jwt.getSubject());
+            return Response.accepted(toView(job, true))
+                    .header("Location", "/api/ocr/jobs/" + job.id)
+                    .build();
+        } catch (RejectedExecutionException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity("The OCR queue is full, please retry later.")
+                    .type(MediaType.TEXT_PLAIN_TYPE)
+                    .header("Retry-After", "5")
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("/jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJob(@PathParam("id") String id, @QueryParam("compact") Boolean compact) {
+        return ocrJobService.find(id, jwt.getSubject())
+                .map(job -> Response.ok(toView(job, compactOrDefault(compact))).build())
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND)
+                        .entity("OCR job not found: " + id)
+                        .type(MediaType.TEXT_PLAIN_TYPE)
+                        .build());
+    }
+
+    /**
+     * Recibe varios archivos (campo {@code files} o {@code file}) y/o ZIPs y devuelve NDJSON:
+     * una linea por recibo, en el orden en que terminan.
+     */
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces("application/x-ndjson")
+    public Response batch(MultipartFormDataInput input, @QueryParam("compact") Boolean compact) throws IOException {
+        List<OcrBatchService.BatchFile> files = new ArrayList<>();
+        Map<String, List<InputPart>> form = input == null ? Map.of() : input.getFormDataMap();
+        for (String field : List.of("files", "file")) {
+            for (InputPart part : form.getOrDefault(field, List.of())) {
+                files.add(new OcrBatchService.BatchFile(
+                        fileNameOf(part),
+                        part.getMediaType() != null ? part.getMediaType().toString() : null,
+                        part.getBody(InputStream.class, null)));
+            }
+        }
+        if (files.isEmpty()) {
+            throw new BadRequestException("No files were received for OCR processing.");
+        }
+
+        StreamingOutput stream = out -> ocrBatchService.process(files, job -> {
+            Map<String, Object> line = toView(job, compactOrDefault(compact));
+            line.put("fileName", job.fileName);
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+            out.flush();
+        });
+        return Response.ok(stream).build();
+    }
+
+    private String fileNameOf(InputPart part) {
+        String disposition = part.getHeaders().getFirst("Content-Disposition");
+        if (disposition != null) {
+            for (String token : disposition.split(";")) {
+                String t = token.trim();
+                if (t.startsWith("filename=")) {
+                    return t.substring("filename=".length()).replace("\"", "");
+                }
+            }
+        }
+        return "archivo";
+    }
+
+    private boolean compactOrDefault(Boolean compact) {
+        return compact != null ? compact : ocrService.isCompactResponses();
+    }
+
+    private Map<String, Object> toView(OcrJob job, boolean compact) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("jobId", job.id);
+        m.put("status", job.status.name());
+        m.put("createdAt", job.createdAt.toString());
+        if (job.finishedAt != null) {
+            m.put("finishedAt", job.finishedAt.toString());
+        }
+        if (job.status == OcrJob.Status.SUCCEEDED) {
+            m.put("result", ocrService.forResponse(job.result, compact));
+        } else if (job.status == OcrJob.Status.FAILED) {
+            m.put("error", job.error);
+            m.put("errorStatus", job.errorStatus);
         }
+        return m;
     }
 }
@@ -0,0 +1,226 @@
+package org.acme.ocrquarkus;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cache de resultados OCR direccionada por el SHA-256 de la imagen recibida, del modelo de Azure y de la
+ * version del prompt/esquema de campos: cambiar cualquiera de los dos invalida las entradas anteriores.
+ * Primer nivel: LRU acotado en memoria. Segundo nivel: un archivo JSON por hash en disco,
+ * que sobrevive reinicios. Ambos niveles expiran segun {@code ocr.cache.ttl-hours}; los archivos vencidos
+ * que nadie vuelve a leer se borran en una pasada periodica ({@code ocr.cache.disk-purge-interval-minutes}).
+ */
+@ApplicationScoped
+public class OcrResultCache {
+
+    private static final Logger LOG = Logger.getLogger(OcrResultCache.class);
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Path diskDir;
+    private final byte[] keyPrefix;
+    private final Map<String, Entry> memory;
+    private final ScheduledExecutorService purger;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    public OcrResultCache(
+            @ConfigProperty(name = "ocr.cache.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "ocr.cache.memory-max-entries", defaultValue = "500") int maxEntries,
+            @ConfigProperty(name = "ocr.cache.ttl-hours", defaultValue = "24") int ttlHours,
+            @ConfigProperty(name = "ocr.cache.disk-dir", defaultValue = "") String diskDir,
+            @ConfigProperty(name = "azure.docintel.model", defaultValue = "prebuilt-read") String model,
+            @ConfigProperty(name = "ocr.cache.schema-version", defaultValue = "1") String schemaVersion,
+            @ConfigProperty(name = "ocr.cache.disk-purge-interval-minutes", defaultValue = "60") int purgeIntervalMinutes,
+            OcrMetrics metrics
+    ) {
+        this.enabled = enabled;
+        // Separados por '\0' para que "a"+"bc" y "ab"+"c" no den la misma clave
+        this.keyPrefix = (model + '\0' + schemaVersion + '\0').getBytes(StandardCharsets.UTF_8);
+        this.ttlMillis = Duration.ofHours(Math.max(ttlHours, 1)).toMillis();
+        int capacity = Math.max(maxEntries, 1);
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.diskDir = (diskDir == null || diskDir.isBlank())
+                ? Path.of(System.getProperty("java.io.tmpdir"), "ocr-cache")
+                : Path.of(diskDir);
+        // Una consulta que falla en memoria sigue en disco: el fallo de memoria es acierto de disco + fallo total
+        metrics.resultCache(this, c -> c.memoryHits.get(), c -> c.diskHits.get() + c.misses.get(),
+                c -> c.diskHits.get(), c -> c.misses.get(), c -> c.stores.get(), OcrResultCache::memoryEntries);
+        if (enabled) {
+            this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ocr-cache-purge");
+                t.setDaemon(true);
+                return t;
+            });
+            // La primera pasada es al arrancar, como antes, pero ya fuera del hilo que crea el bean
+            purger.scheduleWithFixedDelay(this::purgeExpiredOnDisk, 0, Math.max(purgeIntervalMinutes, 1), TimeUnit.MINUTES);
+        } else {
+            this.purger = null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (purger != null) {
+            purger.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String hash(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(keyPrefix);
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    public Optional<TotalResult> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(now, ttlMillis)) {
+                    memoryHits.incrementAndGet();
+                    return Optional.of(entry.result);
+                }
+                memory.remove(key);
+            }
+        }
+
+        Entry fromDisk = readFromDisk(key, now);
+        if (fromDisk != null) {
+            diskHits.incrementAndGet();
+            synchronized (memory) {
+                memory.put(key, fromDisk);
+            }
+            return Optional.of(fromDisk.result);
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(String key, TotalResult result) {
+        if (!enabled || result == null) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.createdAt = System.currentTimeMillis();
+        entry.result = result;
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        writeToDisk(key, entry);
+        stores.incrementAndGet();
+    }
+
+    private int memoryEntries() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    private Entry readFromDisk(String key, long now) {
+        Path file = fileFor(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            Entry entry = mapper.readValue(file.toFile(), Entry.class);
+            if (entry.result == null || entry.isExpired(now, ttlMillis)) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return entry;
+        } catch (IOException e) {
+            LOG.warnf(e, "No se pudo leer la entrada de cache OCR %s", file);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            mapper.writeValue(tmp.toFile(), entry);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warnf(e, "No se pudo escribir la entrada de cache OCR %s", file);
+        }
+    }
+
+    private Path fileFor(String key) {
+        // Subdirectorio por prefijo del hash para no acumular miles de archivos en una sola carpeta
+        return diskDir.resolve(key.substring(0, 2)).resolve(key + ".json");
+    }
+
+    private void purgeExpiredOnDisk() {
+        if (!Files.isDirectory(diskDir)) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - ttlMillis;
+        try (Stream<Path> files = Files.walk(diskDir, 2)) {
+            files.filter(Files::isRegularFile).forEach(f -> {
+                try {
+                    if (Files.getLastModifiedTime(f).toMillis() < limit) {
+                        Files.deleteIfExists(f);
+                    }
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            LOG.warnf(e, "No se pudo limpiar la cache OCR en %s", diskDir);
+        }
+    }
+
+    public static class Entry {
+        public long createdAt;
+        public TotalResult result;
+
+        boolean isExpired(long now, long ttlMillis) {
+            return now - createdAt > ttlMillis;
+        }
+    }
+}
@@ -1,172 +1,455 @@
 package org.acme.ocrquarkus;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.acme.ocrquarkus.http.HttpClients;
+import org.acme.ocrquarkus.http.ManagedHttpClient;
+import org.acme.ocrquarkus.resilience.Bulkhead;
+import org.acme.ocrquarkus.resilience.BulkheadFullException;
+import org.acme.ocrquarkus.resilience.Bulkheads;
+import org.acme.ocrquarkus.resilience.CircuitBreakers;
+import org.acme.ocrquarkus.resilience.CircuitOpenException;
 import org.acme.ocrquarkus.service.GastoService;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
+import org.acme.ocrquarkus.telemetry.Tracing;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
-import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 @ApplicationScoped
 public class OcrService {
 
+    private static final Logger LOG = Logger.getLogger(OcrService.class);
+
     @ConfigProperty(name = "azure.docintel.endpoint")
     String endpoint;
 
     @ConfigProperty(name = "azure.docintel.key")
     String apiKey;
 
+    /** prebuilt-read (solo texto + LLM) o prebuilt-receipt (campos estructurados). */
+    @ConfigProperty(name = "azure.docintel.model", defaultValue = PREBUILT_READ)
+    String model;
+
+    @ConfigProperty(name = "azure.docintel.receipt.min-confidence", defaultValue = "0.8")
+    double receiptMinConfidence;
+
+    @ConfigProperty(name = "ocr.response.compact", defaultValue = "true")
+    boolean compactResponses;
+
     @Inject
     GastoService gastoService;
 
     @Inject
     LlmService llmService;
 
-    private static final int MAX_POLL_ATTEMPTS = 90;
-    private static final long INITIAL_POLL_DELAY_MILLIS = 1000;
-    private static final long MAX_POLL_DELAY_MILLIS = 4000;
+    @Inject
+    AzureOperationPoller operationPoller;
 
-    private final HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(30))
-            .build();
+    @Inject
+    OcrResultCache cache;
+
+    @Inject
+    ImagePreprocessor preprocessor;
+
+    @Inject
+    ReceiptFieldExtractor fieldExtractor;
+
+    @Inject
+    Bulkheads bulkheads;
+
+    @Inject
+    CircuitBreakers circuitBreakers;
+
+    @Inject
+    Tracing tracing;
+
+    @Inject
+    OcrMetrics metrics;
+
+    @Inject
+    HttpClients httpClients;
+
+    private ManagedHttpClient client;
 
     private static final ObjectMapper M = new ObjectMapper();
 
+    // Analisis en curso por hash de imagen; se retiran al terminar, con exito o no
+    private final Map<String, CompletableFuture<TotalResult>> inFlight = new ConcurrentHashMap<>();
+    private static final String LLM_INVALID_JSON_PREFIX = "{\"error\": ";
+    private static final int MAX_SUBMIT_ATTEMPTS = 3;
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+    private static final String PREBUILT_READ = "prebuilt-read";
+    private static final String PREBUILT_RECEIPT = "prebuilt-receipt";
+
+    @PostConstruct
+    void init() {
+        client = httpClients.get(HttpClients.AZURE_DOCINTEL);
+    }
+
     public String ocr(byte[] imageBytes) throws Exception {
+        return ocr(imageBytes, compactResponses);
+    }
+
+    public String ocr(byte[] imageBytes, boolean compact) throws Exception {
+        // 6. Devolver la respuesta completa como JSON
+        return M.writeValueAsString(forResponse(analyze(imageBytes), compact));
+    }
+
+    /**
+     * En modo compacto se omite {@code ocrResult} (el JSON crudo de Azure, con poligonos, suele pesar cientos de KB).
+     * El resultado cacheado conserva siempre la respuesta completa.
+     */
+    public TotalResult forResponse(TotalResult result, boolean compact) {
+        if (!compact || result == null || result.ocrResult == null) {
+            return result;
+        }
+        TotalResult copy = new TotalResult();
+        copy.extractedText = result.extractedText;
+        copy.llmResponse = result.llmResponse;
+        copy.degraded = result.degraded;
+        return copy;
+    }
+
+    public boolean isCompactResponses() {
+        return compactResponses;
+    }
+
+    /**
+     * Ejecuta el pipeline completo (Azure + LLM) y devuelve el resultado sin serializar.
+     * Si ya hay un analisis en curso de la misma imagen se espera a ese en lugar de repetirlo.
+     */
+    public TotalResult analyze(byte[] imageBytes) throws Exception {
+        prepare(imageBytes);
+        String cacheKey = cache.hash(imageBytes);
+        Optional<TotalResult> cached = cache.get(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        CompletableFuture<TotalResult> mine = new CompletableFuture<>();
+        CompletableFuture<TotalResult> running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            String ocrResult = join(processWithAzure(preprocessor.process(imageBytes)));
+            TotalResult result = remember(cacheKey, tracing.inSpan("ocr.fields", span -> completeAnalysis(ocrResult, span)));
+            mine.complete(result);
+            return result;
+        } catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    /**
+     * Variante no bloqueante usada por {@link OcrJobService}: mientras Azure procesa no se ocupa ningun hilo
+     * y solo el pre-procesado de la imagen y la llamada al LLM se ejecutan en {@code llmExecutor}.
+     */
+    public CompletableFuture<TotalResult> analyzeAsync(byte[] imageBytes, Executor llmExecutor) {
+        String cacheKey;
+        try {
+            prepare(imageBytes);
+            cacheKey = cache.hash(imageBytes);
+            Optional<TotalResult> cached = cache.get(cacheKey);
+            if (cached.isPresent()) {
+                return CompletableFuture.completedFuture(cached.get());
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // La misma imagen enviada dos veces a la vez (reintentos del cliente, lotes repetidos) se analiza una vez
+        CompletableFuture<TotalResult> mine = new CompletableFuture<>();
+        CompletableFuture<TotalResult> running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            return running;
+        }
+        // El pre-procesado es CPU pura: se hace en el pool de jobs y no en el hilo que encola.
+        // Las etapas heredan el contexto de traza de quien encola el analisis.
+        Executor traced = Context.current().wrap(llmExecutor);
+        CompletableFuture.supplyAsync(() -> preprocessor.process(imageBytes), traced)
+                .thenCompose(this::processWithAzure)
+                .thenApplyAsync(ocrResult -> {
+                    try {
+                        return remember(cacheKey, tracing.inSpan("ocr.fields", span -> completeAnalysis(ocrResult, span)));
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, traced)
+                .whenComplete((result, error) -> {
+                    inFlight.remove(cacheKey, mine);
+                    if (error == null) {
+                        mine.complete(result);
+                    } else {
+                        mine.completeExceptionally(error);
+                    }
+                });
+        return mine;
+    }
+
+    private void prepare(byte[] imageBytes) {
         if (imageBytes == null || imageBytes.length == 0) {
             throw new BadRequestException("The uploaded file is empty or unreadable.");
         }
 
         ensureAzureConfiguration();
+    }
+
+    /** Solo se cachean respuestas con JSON del LLM valido, para que un fallo puntual no quede fijado. */
+    private TotalResult remember(String cacheKey, TotalResult result) {
+        // Ni errores ni resultados degradados: al volver el LLM el mismo archivo debe reprocesarse
+        if (result.llmJsonValid && result.degraded == null) {
+            cache.put(cacheKey, result);
+        }
+        return result;
+    }
 
-        // 1. Procesar la imagen con Azure Document Intelligence
-        System.out.println("Enviando imagen a Azure Document Intelligence...");
-        String ocrResult = processWithAzure(imageBytes);
-        System.out.println("Respuesta de Azure: " + ocrResult);
-        
+    private TotalResult completeAnalysis(String ocrResult, Span span) throws Exception {
         // 2. Extraer el texto del resultado del OCR
         String extractedText = extractText(ocrResult);
-        System.out.println("Texto extraído del OCR: " + extractedText);
-        
-        // 3. Procesar con Hugging Face LLM
-        String llmResult = processWithLLM(extractedText);
-        
+        tracing.setCapped(span, "ocr.extracted_text", extractedText);
+
+        // 3. Campos de prebuilt-receipt o extraccion local; solo si no son concluyentes se procesa con Hugging Face LLM
+        String llmResult;
+        boolean degraded = false;
+        AzureReceiptFields receiptFields = PREBUILT_RECEIPT.equals(model)
+                ? AzureReceiptFields.from(AnalyzeResultReader.readFirstDocumentFields(ocrResult))
+                : null;
+        if (receiptFields != null && receiptFields.isConfident(receiptMinConfidence)) {
+            llmResult = receiptFields.toJson();
+            span.setAttribute("ocr.fields.source", "azure-prebuilt-receipt");
+        } else {
+            ReceiptFieldExtractor.Extraction extraction = fieldExtractor.extract(extractedText);
+            if (fieldExtractor.accepts(extraction)) {
+                fieldExtractor.recordFastPath();
+                llmResult = extraction.toJson();
+                span.setAttribute("ocr.fields.source", "extractor-local");
+            } else {
+                long llmStart = System.nanoTime();
+                try {
+                    span.setAttribute("ocr.fields.source", "llm");
+                    llmResult = processWithLLM(extractedText);
+                    fieldExtractor.recordLlmFallback((System.nanoTime() - llmStart) / 1_000_000);
+                    if (receiptFields != null) {
+                        // El LLM solo completa los campos en los que Azure tiene poca confianza
+                        llmResult = receiptFields.mergeInto(llmResult, receiptMinConfidence);
+                    }
+                } catch (CircuitOpenException | LlmUnavailableException | IOException e) {
+                    // Modo degradado: texto OCR + lo que se pudo extraer localmente; el usuario completa el resto
+                    LOG.warnf("LLM no disponible (%s); se devuelve la extraccion parcial", e.getMessage());
+                    llmResult = degradedJson(extraction, receiptFields);
+                    degraded = true;
+                    span.setAttribute("ocr.fields.source", "degradado");
+                }
+            }
+        }
+
         // Validar que la respuesta del LLM sea un JSON válido
         // Nota: El guardado en BD se realiza desde el frontend llamando a /api/gastos/llm.
         //       Para evitar duplicados, aquí solo validamos el JSON sin persistir.
+        boolean llmJsonValid = true;
         try {
             M.readTree(llmResult);
         } catch (Exception e) {
-            System.err.println("La respuesta del LLM no es un JSON válido: " + llmResult);
-            llmResult = "{\"error\": \"La respuesta del LLM no es un JSON válido\"}";
+            llmJsonValid = false;
+            LOG.warnf("La respuesta del LLM no es un JSON válido: %s", tracing.cap(llmResult));
+            llmResult = LLM_INVALID_JSON_PREFIX + "\"La respuesta del LLM no es un JSON válido\"}";
         }
-        
+
+        tracing.setCapped(span, "ocr.llm_response", llmResult);
+
         // 5. Crear respuesta con toda la información
         var response = new TotalResult();
         response.ocrResult = ocrResult;
         response.extractedText = extractedText;
         response.llmResponse = llmResult;
-        
-        // 6. Devolver la respuesta completa como JSON
-        return M.writeValueAsString(response);
+        response.llmJsonValid = llmJsonValid;
+        if (degraded) {
+            response.degraded = true;
+        }
+        return response;
     }
 
-    private String processWithAzure(byte[] imageBytes) throws Exception {
+    private String degradedJson(ReceiptFieldExtractor.Extraction extraction, AzureReceiptFields receiptFields) throws IOException {
+        ObjectNode node = (ObjectNode) (receiptFields != null
+                ? M.readTree(receiptFields.toJson())
+                : M.readTree(extraction.toPartialJson()));
+        node.put("Degradado", true);
+        return node.toString();
+    }
+
+    private CompletableFuture<String> processWithAzure(byte[] imageBytes) {
         String apiVersion = "2024-02-29-preview";
         String analyzeUrl = endpoint +
-                "documentintelligence/documentModels/prebuilt-read:analyze?api-version=" + apiVersion;
-
-        String base64 = Base64.getEncoder().encodeToString(imageBytes);
-        String body = "{\"base64Source\":\"" + base64 + "\"}";
+                "documentintelligence/documentModels/" + model + ":analyze?api-version=" + apiVersion;
 
+        // Se envian los bytes tal cual: el publisher lee directamente del arreglo, sin Base64 ni JSON intermedio
         HttpRequest submit = HttpRequest.newBuilder()
                 .uri(URI.create(analyzeUrl))
                 .timeout(Duration.ofSeconds(60))
                 .header("Ocp-Apim-Subscription-Key", apiKey)
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(imageBytes))
                 .build();
 
-        HttpResponse<String> submitRes = client.send(submit, HttpResponse.BodyHandlers.ofString());
-        int initialStatus = submitRes.statusCode();
-        System.out.println("Status code inicial: " + initialStatus);
-        System.out.println("Respuesta inicial: " + submitRes.body());
-
-        if (initialStatus < 200 || initialStatus >= 300) {
-            throw remoteError("Azure Document Intelligence rejected the analyze request", initialStatus, submitRes.body());
-        }
-
-        String opLoc = submitRes.headers().firstValue("operation-location").orElse(null);
-        if (opLoc == null || opLoc.isBlank()) {
-            throw remoteError("Azure Document Intelligence did not return the operation-location header", initialStatus, submitRes.body());
-        }
-        System.out.println("URL de operacion: " + opLoc);
-
-        // Polling hasta 'succeeded'
-        long totalDelayMillis = 0;
-        for (int attempt = 0; attempt < MAX_POLL_ATTEMPTS; attempt++) {
-            long delay = Math.min(
-                    INITIAL_POLL_DELAY_MILLIS + attempt * 250L,
-                    MAX_POLL_DELAY_MILLIS
-            );
-            Thread.sleep(delay);
-            totalDelayMillis += delay;
-            HttpRequest get = HttpRequest.newBuilder()
-                    .uri(URI.create(opLoc))
-                    .timeout(Duration.ofSeconds(60))
-                    .header("Ocp-Apim-Subscription-Key", apiKey)
-                    .GET()
-                    .build();
-            HttpResponse<String> res = client.send(get, HttpResponse.BodyHandlers.ofString());
-            int pollStatus = res.statusCode();
-            if (pollStatus >= 400) {
-                throw remoteError("Azure Document Intelligence returned an error while polling the analyze operation", pollStatus, res.body());
-            }
-            JsonNode j = M.readTree(res.body());
-            String status = j.path("status").asText();
-            if ("succeeded".equalsIgnoreCase(status)) {
-                return res.body();
-            }
-            if ("failed".equalsIgnoreCase(status)) {
-                throw remoteError("Azure Document Intelligence reported a failed status for the analyze operation", pollStatus, res.body());
+        return tracing.inSpanAsync("azure.docintel.analyze", span -> {
+            span.setAttribute("azure.docintel.model", model);
+            span.setAttribute("ocr.upload.bytes", imageBytes.length);
+            // El envio puede arrancar en el temporizador del bulkhead y el polling en el scheduler: se fija el contexto
+            Context context = Context.current();
+            return circuitBreakers.get(CircuitBreakers.AZURE_DOCINTEL)
+                    .execute(() -> submitAndPoll(submit, 1, context), OcrService::isAzureFailure)
+                    .thenApply(result -> {
+                        tracing.setCapped(span, "azure.docintel.response", result);
+                        return result;
+                    });
+        }).exceptionallyCompose(e -> CompletableFuture.failedFuture(translate(e)));
+    }
+
+    /**
+     * Envio + polling dentro del bulkhead de Azure: el permiso se mantiene mientras la operacion esta en vuelo.
+     * Un 429 reduce la tasa del bulkhead y el envio se reintenta, esperando de nuevo su turno.
+     */
+    private CompletableFuture<String> submitAndPoll(HttpRequest submit, int attempt, Context context) {
+        Bulkhead bulkhead = bulkheads.get(Bulkheads.AZURE_DOCINTEL);
+        return bulkhead.execute(context.wrapSupplier(() -> {
+            long submitStart = System.nanoTime();
+            return client.sendAsync(submit, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((res, error) -> {
+                        if (error != null) {
+                            metrics.remoteFailure(OcrMetrics.AZURE_DOCINTEL, "io");
+                        }
+                    })
+                    .thenCompose(context.wrapFunction(submitRes -> {
+                        int initialStatus = submitRes.statusCode();
+                        metrics.azureSubmit(System.nanoTime() - submitStart, initialStatus);
+                        Span.fromContext(context).setAttribute("azure.docintel.submit_attempts", attempt);
+
+                        if (initialStatus == 429) {
+                            bulkhead.onThrottled(retryAfterMillis(submitRes));
+                            throw new ThrottledException(submitRes.body());
+                        }
+                        if (initialStatus < 200 || initialStatus >= 300) {
+                            throw remoteError("Azure Document Intelligence rejected the analyze request", initialStatus, submitRes.body());
+                        }
+                        bulkhead.onSuccess();
+
+                        String opLoc = submitRes.headers().firstValue("operation-location").orElse(null);
+                        if (opLoc == null || opLoc.isBlank()) {
+                            throw remoteError("Azure Document Intelligence did not return the operation-location header", initialStatus, submitRes.body());
+                        }
+                        Span.fromContext(context).setAttribute("azure.docintel.operation_location", opLoc);
+
+                        // Polling hasta 'succeeded' en el scheduler compartido; el 202 trae el primer Retry-After
+                        return operationPoller.await(opLoc, apiKey, submitRes);
+                    }));
+        }))
+                .exceptionallyCompose(e -> {
+                    if (unwrap(e) instanceof ThrottledException && attempt < MAX_SUBMIT_ATTEMPTS) {
+                        return submitAndPoll(submit, attempt + 1, context);
+                    }
+                    return CompletableFuture.failedFuture(e);
+                });
+    }
+
+    /** Solo los errores de Azure (5xx, timeouts, red) abren el circuito; un archivo invalido o un 429 no. */
+    private static boolean isAzureFailure(Throwable e) {
+        if (e instanceof IOException) {
+            return true;
+        }
+        if (e instanceof AzureOperationPoller.OperationFailedException failure) {
+            return failure.getStatusCode() >= 500;
+        }
+        if (e instanceof WebApplicationException wae) {
+            return wae.getResponse().getStatus() >= 500;
+        }
+        return false;
+    }
+
+    private long retryAfterMillis(HttpResponse<?> response) {
+        String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+        if (retryAfter != null) {
+            try {
+                return (long) (Double.parseDouble(retryAfter.trim()) * 1000);
+            } catch (NumberFormatException ignored) {
             }
         }
-        long waitedSeconds = (long) Math.ceil(totalDelayMillis / 1000.0);
-        throw remoteError(
-                "Azure Document Intelligence did not finish within the expected time (" + waitedSeconds + "s)",
-                504,
-                null
-        );
+        return DEFAULT_RETRY_AFTER_MILLIS;
     }
 
     private String extractText(String ocrResult) throws Exception {
-        JsonNode json = M.readTree(ocrResult);
-        StringBuilder text = new StringBuilder();
-        
-        JsonNode pages = json.path("analyzeResult").path("pages");
-        for (JsonNode page : pages) {
-            JsonNode lines = page.path("lines");
-            for (JsonNode line : lines) {
-                text.append(line.path("content").asText()).append("\n");
+        return AnalyzeResultReader.extractLines(ocrResult);
+    }
+
+    private String processWithLLM(String text) throws Exception {
+        try {
+            return llmService.classifyFromOcr(text, null, null);
+        } catch (BulkheadFullException e) {
+            throw plainTextError(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getMessage());
+        }
+    }
+
+    private <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) {
+                throw ex;
             }
+            throw e;
         }
-        
-        return text.toString();
     }
 
-    private String processWithLLM(String text) throws Exception {
-        return llmService.classifyFromOcr(text, null, null);
+    /** Desenvuelve errores asincronos y convierte los fallos de polling en la misma respuesta HTTP de antes. */
+    private Throwable translate(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof AzureOperationPoller.OperationFailedException failure) {
+            return remoteError(failure.getMessage(), failure.getStatusCode(), failure.getBody());
+        }
+        if (cause instanceof ThrottledException throttled) {
+            return remoteError("Azure Document Intelligence is throttling analyze requests", 429, throttled.getMessage());
+        }
+        if (cause instanceof BulkheadFullException full) {
+            return plainTextError(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), full.getMessage());
+        }
+        if (cause instanceof CircuitOpenException open) {
+            return circuitOpenError(open);
+        }
+        return cause;
+    }
+
+    private Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
     }
 
     private void ensureAzureConfiguration() {
@@ -194,6 +477,8 @@ public class OcrService {
         int httpStatus;
         if (statusCode == 400 || statusCode == 413 || statusCode == 415 || statusCode == 422) {
             httpStatus = Response.Status.BAD_REQUEST.getStatusCode();
+        } else if (statusCode == 429) {
+            httpStatus = Response.Status.SERVICE_UNAVAILABLE.getStatusCode();
         } else if (statusCode >= 400 && statusCode < 500) {
             httpStatus = Response.Status.BAD_GATEWAY.getStatusCode();
         } else if (statusCode >= 500 && statusCode < 600) {
@@ -205,6 +490,14 @@ public class OcrService {
         return plainTextError(httpStatus, message.toString());
     }
 
+    private WebApplicationException circuitOpenError(CircuitOpenException e) {
+        return new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .type(MediaType.TEXT_PLAIN_TYPE)
+                .header("Retry-After", Math.max(e.getRetryAfterMillis() / 1000, 1))
+                .entity(e.getMessage())
+                .build());
+    }
+
     private WebApplicationException plainTextError(int statusCode, String message) {
         Response.ResponseBuilder builder = Response.status(statusCode)
                 .type(MediaType.TEXT_PLAIN_TYPE);
@@ -213,4 +506,13 @@ public class OcrService {
         }
         return new WebApplicationException(builder.build());
     }
+
+    /** Azure respondio 429 al envio; se reintenta tras el Retry-After. */
+    private static final class ThrottledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ThrottledException(String body) {
+            super(body, null, false, false);
+        }
+    }
 }
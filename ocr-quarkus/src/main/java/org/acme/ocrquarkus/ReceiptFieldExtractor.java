@@ -0,0 +1,308 @@
+package org.acme.ocrquarkus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extractor local y determinista de NombreEmpresa, MontoTotal y Fecha a partir del texto OCR.
+ * Recorre las lineas una sola vez puntuando candidatos; si la confianza combinada supera
+ * {@code ocr.fast-path.min-confidence}, {@link OcrService} usa su JSON y se salta el LLM.
+ */
+@ApplicationScoped
+public class ReceiptFieldExtractor {
+
+    private static final ObjectMapper M = new ObjectMapper();
+
+    private static final Pattern AMOUNT = Pattern.compile("(?<![\\d.,])(\\d{1,3}(?:[.,]\\d{3})*|\\d+)[.,](\\d{2})(?![\\d])");
+    private static final Pattern DATE_DMY = Pattern.compile("(?<!\\d)(\\d{1,2})[/\\-.](\\d{1,2})[/\\-.](\\d{4}|\\d{2})(?!\\d)");
+    private static final Pattern DATE_ISO = Pattern.compile("(?<!\\d)(\\d{4})-(\\d{2})-(\\d{2})(?!\\d)");
+    private static final String[] NOT_A_MERCHANT = {
+            "FACTURA", "TICKET", "RECIBO", "NIT", "RUC", "NRC", "TEL", "FECHA", "DIRECCION", "DIRECCIÓN",
+            "CAJA", "CAJERO", "SUCURSAL", "COMPROBANTE", "CLIENTE", "SERIE", "AUTORIZACION", "WWW", "HTTP"
+    };
+
+    private static final double WEIGHT_TOTAL = 0.5;
+    private static final double WEIGHT_DATE = 0.3;
+    private static final double WEIGHT_MERCHANT = 0.2;
+
+    private final boolean enabled;
+    private final double minConfidence;
+
+    private final OcrMetrics metrics;
+
+    // Latencia media del LLM hasta ahora: es lo que se estima ahorrado en cada acierto de la via rapida
+    private final AtomicLong llmFallbacks = new AtomicLong();
+    private final AtomicLong llmMillisTotal = new AtomicLong();
+
+    public ReceiptFieldExtractor(
+            @ConfigProperty(name = "ocr.fast-path.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "ocr.fast-path.min-confidence", defaultValue = "0.85") double minConfidence,
+            OcrMetrics metrics
+    ) {
+        this.enabled = enabled;
+        this.minConfidence = minConfidence;
+        this.metrics = metrics;
+    }
+
+    public Extraction extract(String text) {
+        Extraction ex = new Extraction();
+        if (text == null || text.isEmpty()) {
+            return ex;
+        }
+
+        int lineNo = 0;
+        int start = 0;
+        boolean pendingTotalLabel = false;
+        double pendingTotalScore = 0;
+        int len = text.length();
+        while (start < len) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = len;
+            }
+            String line = text.substring(start, end).trim();
+            start = end + 1;
+            if (line.isEmpty()) {
+                continue;
+            }
+            String upper = line.toUpperCase(Locale.ROOT);
+
+            // Etiqueta TOTAL sin importe en la misma linea: el importe suele venir en la siguiente
+            if (pendingTotalLabel) {
+                BigDecimal amount = lastAmount(line);
+                if (amount != null) {
+                    ex.offerTotal(amount, pendingTotalScore - 0.05);
+                }
+                pendingTotalLabel = false;
+            }
+
+            double totalScore = totalLabelScore(upper);
+            if (totalScore > 0) {
+                BigDecimal amount = lastAmount(line);
+                if (amount != null) {
+                    ex.offerTotal(amount, totalScore);
+                } else {
+                    pendingTotalLabel = true;
+                    pendingTotalScore = totalScore;
+                }
+            } else {
+                BigDecimal amount = lastAmount(line);
+                if (amount != null && (ex.maxAmount == null || amount.compareTo(ex.maxAmount) > 0)) {
+                    ex.maxAmount = amount;
+                }
+            }
+
+            if (ex.dateScore < 1.0) {
+                scoreDate(line, ex);
+            }
+
+            if (ex.merchant == null && lineNo < 6) {
+                double merchantScore = merchantScore(line, upper, lineNo);
+                if (merchantScore > 0) {
+                    ex.merchant = line;
+                    ex.merchantScore = merchantScore;
+                }
+            }
+            lineNo++;
+        }
+
+        if (ex.total == null && ex.maxAmount != null) {
+            // Sin etiqueta TOTAL: el mayor importe es un candidato debil
+            ex.total = ex.maxAmount;
+            ex.totalScore = 0.4;
+        }
+        return ex;
+    }
+
+    /** Una fecha ambigua (dd/mm o mm/dd) nunca pasa por la via rapida: la decide el LLM con el contexto. */
+    public boolean accepts(Extraction ex) {
+        return enabled && !ex.dateAmbiguous && ex.confidence() >= minConfidence;
+    }
+
+    public void recordFastPath() {
+        metrics.fieldExtraction("fast-path");
+        long fallbacks = llmFallbacks.get();
+        if (fallbacks > 0) {
+            metrics.fastPathSaved(llmMillisTotal.get() / fallbacks);
+        }
+    }
+
+    public void recordLlmFallback(long llmMillis) {
+        metrics.fieldExtraction("fallback");
+        llmFallbacks.incrementAndGet();
+        llmMillisTotal.addAndGet(llmMillis);
+    }
+
+    private double totalLabelScore(String upper) {
+        int idx = upper.indexOf("TOTAL");
+        if (idx < 0) {
+            return 0;
+        }
+        if (upper.contains("SUBTOTAL") || upper.contains("SUB TOTAL") || upper.contains("SUB-TOTAL")
+                || upper.contains("ARTICULOS") || upper.contains("ITEMS") || upper.contains("DESCUENTO")
+                || upper.contains("TOTAL IVA") || upper.startsWith("IVA") || upper.contains("PROPINA")) {
+            return 0;
+        }
+        if (upper.contains("TOTAL A PAGAR") || upper.contains("GRAN TOTAL") || upper.contains("TOTAL PAGAR")) {
+            return 1.0;
+        }
+        return 0.9;
+    }
+
+    private BigDecimal lastAmount(String line) {
+        Matcher m = AMOUNT.matcher(line);
+        String integer = null;
+        String decimals = null;
+        while (m.find()) {
+            integer = m.group(1);
+            decimals = m.group(2);
+        }
+        if (integer == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(integer.length() + 3);
+        for (int i = 0; i < integer.length(); i++) {
+            char c = integer.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        digits.append('.').append(decimals);
+        return new BigDecimal(digits.toString()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private void scoreDate(String line, Extraction ex) {
+        Matcher iso = DATE_ISO.matcher(line);
+        if (iso.find()) {
+            offerDate(ex, Integer.parseInt(iso.group(3)), Integer.parseInt(iso.group(2)),
+                    Integer.parseInt(iso.group(1)), 1.0, false);
+            return;
+        }
+        Matcher m = DATE_DMY.matcher(line);
+        while (m.find()) {
+            int a = Integer.parseInt(m.group(1));
+            int b = Integer.parseInt(m.group(2));
+            int year = Integer.parseInt(m.group(3));
+            if (year < 100) {
+                year += 2000;
+            }
+            if ((a > 12 && b <= 12) || a == b) {
+                offerDate(ex, a, b, year, 1.0, false);    // dd/mm inequivoco
+            } else if (b > 12 && a <= 12) {
+                offerDate(ex, b, a, year, 0.95, false);   // formato ingles mm/dd
+            } else {
+                offerDate(ex, a, b, year, 0.8, true);     // ambiguo: se asume dd/mm
+            }
+        }
+    }
+
+    private void offerDate(Extraction ex, int day, int month, int year, double score, boolean ambiguous) {
+        LocalDate date;
+        try {
+            date = LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        if (date.isAfter(today.plusDays(1)) || date.isBefore(today.minusYears(2))) {
+            score *= 0.5;
+        }
+        if (score > ex.dateScore) {
+            ex.date = date;
+            ex.dateScore = score;
+            ex.dateAmbiguous = ambiguous;
+        }
+    }
+
+    private double merchantScore(String line, String upper, int lineNo) {
+        int letters = 0;
+        int digits = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isLetter(c)) {
+                letters++;
+            } else if (Character.isDigit(c)) {
+                digits++;
+            }
+        }
+        if (letters < 3 || digits > letters) {
+            return 0;
+        }
+        for (String keyword : NOT_A_MERCHANT) {
+            if (upper.contains(keyword)) {
+                return 0;
+            }
+        }
+        return lineNo <= 1 ? 0.8 : 0.6;
+    }
+
+    public static class Extraction {
+        String merchant;
+        double merchantScore;
+        BigDecimal total;
+        double totalScore;
+        BigDecimal maxAmount;
+        LocalDate date;
+        double dateScore;
+        boolean dateAmbiguous;
+
+        void offerTotal(BigDecimal amount, double score) {
+            // A igual puntuacion gana el ultimo TOTAL del recibo
+            if (score >= totalScore) {
+                total = amount;
+                totalScore = score;
+            }
+        }
+
+        /** Sin total o sin fecha la extraccion no es utilizable. */
+        public double confidence() {
+            if (total == null || date == null) {
+                return 0;
+            }
+            return WEIGHT_TOTAL * totalScore + WEIGHT_DATE * dateScore + WEIGHT_MERCHANT * merchantScore;
+        }
+
+        /** JSON con el mismo formato que devuelve el LLM (ver {@code LlmService}). */
+        public String toJson() {
+            String name = merchant != null ? merchant : "Desconocido";
+            ObjectNode node = M.createObjectNode();
+            node.put("NombreEmpresa", name);
+            node.put("Descripcion", "Compra en " + name);
+            node.put("MontoTotal", total.toPlainString());
+            node.put("Fecha", String.format("%02d/%02d/%02d", date.getDayOfMonth(), date.getMonthValue(), date.getYear() % 100));
+            node.put("Confianza", Math.round(confidence() * 100) / 100.0);
+            node.put("Origen", "extractor-local");
+            return node.toString();
+        }
+
+        /** Solo los campos encontrados; se usa cuando el LLM no esta disponible para completar el resto. */
+        public String toPartialJson() {
+            ObjectNode node = M.createObjectNode();
+            if (merchant != null) {
+                node.put("NombreEmpresa", merchant);
+                node.put("Descripcion", "Compra en " + merchant);
+            }
+            if (total != null) {
+                node.put("MontoTotal", total.toPlainString());
+            }
+            if (date != null) {
+                node.put("Fecha", String.format("%02d/%02d/%02d", date.getDayOfMonth(), date.getMonthValue(), date.getYear() % 100));
+            }
+            node.put("Confianza", Math.round(confidence() * 100) / 100.0);
+            node.put("Origen", "extractor-local-parcial");
+            return node.toString();
+        }
+    }
+}
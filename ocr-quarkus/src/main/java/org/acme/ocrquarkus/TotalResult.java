@@ -1,7 +1,16 @@
 package org.acme.ocrquarkus;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class TotalResult {
     public String ocrResult;
     public String extractedText;
     public String llmResponse;
+    /** true si el LLM no estaba disponible y llmResponse es una extraccion parcial. */
+    public Boolean degraded;
+    /** false si llmResponse es el error de validacion en lugar del JSON de campos; no se envia al cliente. */
+    @JsonIgnore
+    public boolean llmJsonValid;
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package org.acme.ocrquarkus.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Progreso de un proceso por lotes que recorre una tabla por id. Permite retomar el recorrido
+ * donde se quedo tras un reinicio o una caida de la dependencia remota.
+ */
+@Entity
+@Table(name = "Batch_Checkpoint")
+public class BatchCheckpoint {
+
+    @Id
+    @Column(name = "nombre", length = 100)
+    public String nombre;
+
+    // Ultimo id procesado por completo; 0 = empezar desde el principio
+    @Column(name = "ultimo_id", nullable = false)
+    public long ultimoId;
+
+    @Column(name = "actualizado")
+    public Instant actualizado;
+
+    // Fin de la ultima pasada completa sobre toda la tabla
+    @Column(name = "ultima_pasada")
+    public Instant ultimaPasada;
+
+    public BatchCheckpoint() {
+    }
+}
@@ -5,7 +5,8 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "Gasto")
+// El listado por empleado filtra por evento y pagina por id descendente
+@Table(name = "Gasto", indexes = @Index(name = "idx_gasto_evento_id", columnList = "id_evento, id_gasto"))
 public class Gasto {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,68 @@
+package org.acme.ocrquarkus.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Replica pendiente de un comprobante en OpenKM. Se inserta en la misma transaccion que asocia el archivo
+ * al gasto y la procesa {@code OpenKmOutboxService} en segundo plano.
+ */
+@Entity
+@Table(name = "OpenKm_Outbox", indexes = @Index(name = "idx_okm_outbox_due", columnList = "estado, proximo_intento"))
+public class OpenKmOutbox {
+
+    public enum Estado {
+        PENDIENTE,
+        REPLICADO,
+        // El gasto ya no apunta a este blob (archivo reemplazado o eliminado)
+        DESCARTADO,
+        // Se agotaron los reintentos; se puede reencolar a mano
+        FALLIDO
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_outbox")
+    public Long idOutbox;
+
+    @Column(name = "id_gasto", nullable = false)
+    public Long idGasto;
+
+    @Column(name = "blob_name", length = 300, nullable = false)
+    public String blobName;
+
+    @Column(name = "nombre_archivo", length = 300, nullable = false)
+    public String nombreArchivo;
+
+    @Column(name = "content_type", length = 120)
+    public String contentType;
+
+    @Column(name = "carpeta_usuario", length = 150)
+    public String carpetaUsuario;
+
+    // Segmentos de fecha unidos por '/', p. ej. "2025/Octubre"
+    @Column(name = "segmentos_fecha", length = 100)
+    public String segmentosFecha;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", length = 20, nullable = false)
+    public Estado estado;
+
+    @Column(name = "intentos", nullable = false)
+    public int intentos;
+
+    @Column(name = "proximo_intento", nullable = false)
+    public Instant proximoIntento;
+
+    @Column(name = "ultimo_error", length = 1000)
+    public String ultimoError;
+
+    @Column(name = "creado", nullable = false)
+    public Instant creado;
+
+    @Column(name = "actualizado")
+    public Instant actualizado;
+
+    public OpenKmOutbox() {
+    }
+}
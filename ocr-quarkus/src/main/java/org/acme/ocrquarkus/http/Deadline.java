@@ -0,0 +1,50 @@
+package org.acme.ocrquarkus.http;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Plazo maximo de una peticion entrante. Viaja en el {@link Context} de OpenTelemetry, asi que llega a
+ * los pools de jobs, al temporizador del bulkhead y al scheduler de polling igual que la traza; cada
+ * llamada saliente de {@link ManagedHttpClient} recorta su timeout al tiempo que le queda.
+ */
+public final class Deadline {
+
+    private static final ContextKey<Deadline> KEY = ContextKey.named("ocr-deadline");
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /** Fija un plazo de {@code budget} desde ahora (o mantiene uno anterior mas corto) mientras el Scope este abierto. */
+    public static Scope within(Duration budget) {
+        long candidate = System.nanoTime() + budget.toNanos();
+        Deadline existing = Context.current().get(KEY);
+        if (existing != null && existing.deadlineNanos <= candidate) {
+            return Scope.noop();
+        }
+        return Context.current().with(KEY, new Deadline(candidate)).makeCurrent();
+    }
+
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(Context.current().get(KEY));
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(deadlineNanos - System.nanoTime(), 0));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public long deadlineNanos() {
+        return deadlineNanos;
+    }
+}
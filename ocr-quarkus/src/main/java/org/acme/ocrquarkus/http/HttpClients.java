@@ -0,0 +1,75 @@
+package org.acme.ocrquarkus.http;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
+import org.acme.ocrquarkus.telemetry.Tracing;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Un {@link HttpClient} por destino remoto (Azure, router de Hugging Face, OpenKM), compartido por todos los
+ * beans que lo llaman: asi el pool de conexiones y las sesiones TLS se reutilizan en lugar de re-negociarse
+ * en cada cliente. Todos usan HTTP/2 cuando el servidor lo negocia por ALPN y un executor de hilos virtuales.
+ * Cada destino se configura con {@code http.client.<nombre>.*}.
+ */
+@ApplicationScoped
+public class HttpClients {
+
+    public static final String AZURE_DOCINTEL = "azure-docintel";
+    public static final String HF_ROUTER = "hf-router";
+    public static final String OPENKM = "openkm";
+
+    private final Tracing tracing;
+    private final OcrMetrics metrics;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("http-client-", 0).factory());
+    private final Map<String, ManagedHttpClient> clients = new ConcurrentHashMap<>();
+
+    public HttpClients(
+            Tracing tracing,
+            OcrMetrics metrics,
+            @ConfigProperty(name = "http.client.keepalive-seconds", defaultValue = "120") int keepAliveSeconds
+    ) {
+        this.tracing = tracing;
+        this.metrics = metrics;
+        // Propiedad global del JDK: solo surte efecto si se fija antes del primer HttpClient de la JVM
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        }
+    }
+
+    public ManagedHttpClient get(String destination) {
+        return clients.computeIfAbsent(destination, this::create);
+    }
+
+    private ManagedHttpClient create(String destination) {
+        Config config = ConfigProvider.getConfig();
+        String prefix = "http.client." + destination + ".";
+        boolean http2 = config.getOptionalValue(prefix + "http2", Boolean.class).orElse(true);
+        boolean followRedirects = config.getOptionalValue(prefix + "follow-redirects", Boolean.class).orElse(false);
+        HttpClient client = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(
+                        config.getOptionalValue(prefix + "connect-timeout-ms", Long.class).orElse(10_000L)))
+                .followRedirects(followRedirects ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+        Duration requestTimeout = Duration.ofMillis(
+                config.getOptionalValue(prefix + "request-timeout-ms", Long.class).orElse(60_000L));
+        return new ManagedHttpClient(destination, tracing.instrument(client), requestTimeout, metrics);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package org.acme.ocrquarkus.http;
+
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cliente HTTP compartido de un destino: aplica el timeout por defecto del destino, lo recorta al
+ * {@link Deadline} de la peticion en curso y registra la latencia por host.
+ */
+public class ManagedHttpClient {
+
+    private final String destination;
+    private final HttpClient client;
+    private final Duration defaultTimeout;
+    private final OcrMetrics metrics;
+
+    ManagedHttpClient(String destination, HttpClient client, Duration defaultTimeout, OcrMetrics metrics) {
+        this.destination = destination;
+        this.client = client;
+        this.defaultTimeout = defaultTimeout;
+        this.metrics = metrics;
+    }
+
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        HttpRequest bounded = withDeadline(request);
+        long start = System.nanoTime();
+        try {
+            HttpResponse<T> response = client.send(bounded, handler);
+            record(bounded, start, String.valueOf(response.statusCode()));
+            return response;
+        } catch (IOException e) {
+            record(bounded, start, e instanceof HttpTimeoutException ? "timeout" : "io");
+            throw e;
+        }
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        HttpRequest bounded;
+        try {
+            bounded = withDeadline(request);
+        } catch (HttpTimeoutException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        return client.sendAsync(bounded, handler).whenComplete((response, error) -> {
+            if (response != null) {
+                record(bounded, start, String.valueOf(response.statusCode()));
+            } else {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                record(bounded, start, cause instanceof HttpTimeoutException ? "timeout" : "io");
+            }
+        });
+    }
+
+    public String destination() {
+        return destination;
+    }
+
+    private HttpRequest withDeadline(HttpRequest request) throws HttpTimeoutException {
+        Duration timeout = request.timeout().orElse(defaultTimeout);
+        Deadline deadline = Deadline.current().orElse(null);
+        if (deadline != null) {
+            // Una sola lectura del reloj: timeout(ZERO) lanzaria IllegalArgumentException
+            Duration remaining = deadline.remaining();
+            if (remaining.isZero() || remaining.isNegative()) {
+                throw new HttpTimeoutException("Request deadline exceeded before calling " + destination);
+            }
+            if (remaining.compareTo(timeout) < 0) {
+                timeout = remaining;
+            }
+        }
+        if (request.timeout().isPresent() && request.timeout().get().equals(timeout)) {
+            return request;
+        }
+        return HttpRequest.newBuilder(request, (name, value) -> true).timeout(timeout).build();
+    }
+
+    private void record(HttpRequest request, long startNanos, String status) {
+        metrics.httpClientCall(destination, request.uri().getHost(), request.method(), status,
+                System.nanoTime() - startNanos);
+    }
+}
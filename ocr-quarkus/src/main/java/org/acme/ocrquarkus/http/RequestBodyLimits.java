@@ -0,0 +1,55 @@
+package org.acme.ocrquarkus.http;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.Router;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Limite de cuerpo por ruta. {@code quarkus.http.limits.max-body-size} es global y queda alto solo para
+ * {@code /api/ocr/batch}; el resto de rutas se corta aqui a {@code ocr.http.max-body-size}. Con
+ * Content-Length se responde 413 antes de leer nada; sin el (chunked) se rebaja el limite que aplica
+ * Quarkus al leer el cuerpo.
+ */
+@ApplicationScoped
+public class RequestBodyLimits {
+
+    static final String BATCH_PATH = "/api/ocr/batch";
+
+    // Clave que lee el input stream de Vert.x en Quarkus para cortar cuerpos sin Content-Length
+    private static final String MAX_REQUEST_SIZE_KEY = "io.quarkus.max-request-size";
+
+    @ConfigProperty(name = "ocr.http.max-body-size", defaultValue = "10240K")
+    MemorySize maxBodySize;
+
+    void install(@Observes Router router) {
+        long limit = maxBodySize.asLongValue();
+        // Despues del filtro global de Quarkus (order -2), antes de RESTEasy
+        router.route().order(-1).handler(ctx -> {
+            if (ctx.normalizedPath().equals(BATCH_PATH)) {
+                ctx.next();
+                return;
+            }
+            String length = ctx.request().getHeader(HttpHeaders.CONTENT_LENGTH);
+            if (length != null && parseLength(length) > limit) {
+                ctx.response().putHeader(HttpHeaders.CONNECTION, HttpHeaders.CLOSE)
+                        .setStatusCode(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code())
+                        .end();
+                return;
+            }
+            ctx.put(MAX_REQUEST_SIZE_KEY, limit);
+            ctx.next();
+        });
+    }
+
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
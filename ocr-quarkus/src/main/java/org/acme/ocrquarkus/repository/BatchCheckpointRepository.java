@@ -0,0 +1,20 @@
+package org.acme.ocrquarkus.repository;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.ocrquarkus.entity.BatchCheckpoint;
+
+@ApplicationScoped
+public class BatchCheckpointRepository implements PanacheRepositoryBase<BatchCheckpoint, String> {
+
+    /** Devuelve el checkpoint del proceso, creandolo a cero la primera vez. */
+    public BatchCheckpoint getOrCreate(String nombre) {
+        BatchCheckpoint checkpoint = findById(nombre);
+        if (checkpoint == null) {
+            checkpoint = new BatchCheckpoint();
+            checkpoint.nombre = nombre;
+            persist(checkpoint);
+        }
+        return checkpoint;
+    }
+}
@@ -2,9 +2,101 @@ package org.acme.ocrquarkus.repository;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.Query;
 import org.acme.ocrquarkus.entity.Gasto;
+import org.acme.ocrquarkus.entity.OpenKmOutbox;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 @ApplicationScoped
 public class GastoRepository implements PanacheRepository<Gasto> {
     // Los métodos básicos de CRUD son heredados de PanacheRepository
+
+    private static final String RESUMEN_COLUMNS = "SELECT g.id_gasto, g.descripcion, g.lugar, g.fecha, g.monto, "
+            + "g.id_evento, g.id_tarjeta, g.openkm_doc_uuid, g.blob_name FROM Gasto g ";
+
+    /**
+     * Pagina por keyset (id descendente) de los gastos de los eventos del empleado vinculado al usuario de Keycloak.
+     * Evento y Usuario no estan mapeados en este servicio, por eso la consulta es nativa.
+     */
+    public List<GastoResumen> listarResumenPorUsuario(String keycloakId, Long afterId, int limit) {
+        String sql = RESUMEN_COLUMNS
+                + "JOIN Evento e ON e.id_evento = g.id_evento "
+                + "JOIN Usuario u ON u.id_empleado = e.id_empleado "
+                + "WHERE u.keycloak_id = :keycloakId"
+                + (afterId != null ? " AND g.id_gasto < :afterId" : "")
+                + " ORDER BY g.id_gasto DESC";
+        Query query = getEntityManager().createNativeQuery(sql).setParameter("keycloakId", keycloakId);
+        return page(query, afterId, limit);
+    }
+
+    /** Igual que {@link #listarResumenPorUsuario} pero sin filtrar por empleado (administradores). */
+    public List<GastoResumen> listarResumen(Long afterId, int limit) {
+        String sql = RESUMEN_COLUMNS
+                + (afterId != null ? "WHERE g.id_gasto < :afterId " : "")
+                + "ORDER BY g.id_gasto DESC";
+        return page(getEntityManager().createNativeQuery(sql), afterId, limit);
+    }
+
+    /**
+     * Gastos con archivo pero sin UUID de OpenKM, por id ascendente a partir de {@code afterId}.
+     * Se excluyen los que tienen una replica pendiente (el outbox aun trabaja en ellos) o fallida (se reencola a mano).
+     */
+    public List<Gasto> findSinUuidOpenKm(long afterId, int limit) {
+        return getEntityManager()
+                .createQuery("select g from Gasto g where g.idGasto > :afterId and g.blobName is not null "
+                        + "and g.openkmDocUuid is null and not exists (select 1 from OpenKmOutbox o "
+                        + "where o.idGasto = g.idGasto and o.estado in (:activos)) order by g.idGasto", Gasto.class)
+                .setParameter("afterId", afterId)
+                .setParameter("activos", List.of(OpenKmOutbox.Estado.PENDIENTE, OpenKmOutbox.Estado.FALLIDO))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<GastoResumen> page(Query query, Long afterId, int limit) {
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+        }
+        List<Object[]> rows = query.setMaxResults(limit).getResultList();
+        List<GastoResumen> out = new ArrayList<>(rows.size());
+        for (Object[] r : rows) {
+            out.add(new GastoResumen(
+                    toLong(r[0]), (String) r[1], (String) r[2], toLocalDate(r[3]), toBigDecimal(r[4]),
+                    toLong(r[5]), toLong(r[6]), (String) r[7], (String) r[8]));
+        }
+        return out;
+    }
+
+    // Oracle devuelve NUMBER como BigDecimal y DATE como Timestamp segun el driver
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null || value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value == null || value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof java.sql.Timestamp ts) {
+            return ts.toLocalDateTime().toLocalDate();
+        }
+        if (value instanceof Date d) {
+            return d.toLocalDate();
+        }
+        if (value instanceof java.time.LocalDateTime ldt) {
+            return ldt.toLocalDate();
+        }
+        return LocalDate.parse(value.toString().substring(0, 10));
+    }
 }
@@ -0,0 +1,18 @@
+package org.acme.ocrquarkus.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/** Proyeccion de un gasto para el listado: solo las columnas que se muestran, sin cargar la entidad. */
+public record GastoResumen(
+        Long idGasto,
+        String descripcion,
+        String lugar,
+        LocalDate fecha,
+        BigDecimal monto,
+        Long idEvento,
+        Long idTarjeta,
+        String openkmDocUuid,
+        String blobName
+) {
+}
@@ -0,0 +1,52 @@
+package org.acme.ocrquarkus.repository;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Parameters;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.ocrquarkus.entity.OpenKmOutbox;
+
+import java.time.Instant;
+import java.util.List;
+
+@ApplicationScoped
+public class OpenKmOutboxRepository implements PanacheRepository<OpenKmOutbox> {
+
+    /** Ids de las replicas pendientes cuyo proximo intento ya vencio, las mas antiguas primero. */
+    public List<Long> findDueIds(Instant now, int limit) {
+        return getEntityManager()
+                .createQuery("select o.idOutbox from OpenKmOutbox o where o.estado = :estado "
+                        + "and o.proximoIntento <= :now order by o.proximoIntento", Long.class)
+                .setParameter("estado", OpenKmOutbox.Estado.PENDIENTE)
+                .setParameter("now", now)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Reclama una replica moviendo su proximo intento al final del lease. Es un UPDATE condicional: si otra
+     * instancia la reclamo antes no modifica ninguna fila, sin bloqueos de filas entre instancias.
+     */
+    public boolean claim(Long id, Instant now, Instant leaseUntil) {
+        return update("proximoIntento = :lease, actualizado = :now where idOutbox = :id "
+                        + "and estado = :estado and proximoIntento <= :now",
+                Parameters.with("lease", leaseUntil)
+                        .and("now", now)
+                        .and("id", id)
+                        .and("estado", OpenKmOutbox.Estado.PENDIENTE)) == 1;
+    }
+
+    public boolean existsPendiente(Long idGasto) {
+        return count("idGasto = ?1 and estado = ?2", idGasto, OpenKmOutbox.Estado.PENDIENTE) > 0;
+    }
+
+    /** Borra las replicas terminadas (replicadas o descartadas) cuya ultima actualizacion es anterior a {@code limit}. */
+    public long deleteFinishedBefore(Instant limit) {
+        return delete("estado in :estados and actualizado < :limit",
+                Parameters.with("estados", List.of(OpenKmOutbox.Estado.REPLICADO, OpenKmOutbox.Estado.DESCARTADO))
+                        .and("limit", limit));
+    }
+
+    public long countByEstado(OpenKmOutbox.Estado estado) {
+        return count("estado", estado);
+    }
+}
@@ -0,0 +1,278 @@
+package org.acme.ocrquarkus.resilience;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead de una dependencia remota: tope de llamadas concurrentes mas un token bucket
+ * cuya tasa se adapta (AIMD) a las respuestas 429/Retry-After. Lo que no cabe espera en
+ * una cola FIFO hasta su plazo; si vence o la cola esta llena se rechaza con {@link BulkheadFullException}.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final double maxRate;
+    private final double minRate;
+    private final double rateIncrease;
+    private final long queueTimeoutNanos;
+    private final int maxQueue;
+    private final ScheduledExecutorService timer;
+
+    // Estado protegido por 'this'
+    private int inFlight;
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private ScheduledFuture<?> pendingDrain;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrent, double maxRate, double minRate, double rateIncrease,
+                    long queueTimeoutMillis, int maxQueue, ScheduledExecutorService timer) {
+        this.name = name;
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+        this.maxRate = Math.max(maxRate, 0.01);
+        this.minRate = Math.min(Math.max(minRate, 0.01), this.maxRate);
+        this.rateIncrease = Math.max(rateIncrease, 0);
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(queueTimeoutMillis, 0));
+        this.maxQueue = Math.max(maxQueue, 0);
+        this.timer = timer;
+        this.rate = this.maxRate;
+        this.tokens = burst();
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Ejecuta una llamada asincrona; el permiso se mantiene hasta que el futuro devuelto termina. */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        return acquire().thenCompose(ignored -> {
+            CompletableFuture<T> result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((r, e) -> release());
+        });
+    }
+
+    /** Ejecuta una llamada bloqueante en el hilo actual, esperando turno como maximo el plazo de cola. */
+    public <T> T call(Callable<T> call) throws Exception {
+        CompletableFuture<Void> permit = acquire();
+        try {
+            permit.get();
+        } catch (InterruptedException e) {
+            abandon(permit);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        try {
+            return call.call();
+        } finally {
+            release();
+        }
+    }
+
+    /** La dependencia respondio 429: se reduce la tasa a la mitad y se pausa hasta {@code retryAfterMillis}. */
+    public void onThrottled(long retryAfterMillis) {
+        throttled.incrementAndGet();
+        synchronized (this) {
+            rate = Math.max(minRate, rate / 2);
+            tokens = 0;
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(retryAfterMillis, 0));
+            pausedUntilNanos = Math.max(pausedUntilNanos, until);
+        }
+    }
+
+    /** Respuesta correcta: incremento aditivo de la tasa hasta el maximo configurado. */
+    public void onSuccess() {
+        synchronized (this) {
+            rate = Math.min(maxRate, rate + rateIncrease);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        synchronized (this) {
+            m.put("inFlight", inFlight);
+            m.put("queueDepth", queue.size());
+            m.put("ratePerSecond", Math.round(rate * 100) / 100.0);
+        }
+        m.put("maxConcurrent", maxConcurrent);
+        m.put("maxRatePerSecond", maxRate);
+        m.put("admitted", admitted.get());
+        m.put("rejected", rejected.get());
+        m.put("throttled", throttled.get());
+        return m;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queueDepth() {
+        return queue.size();
+    }
+
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    private CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            refill(System.nanoTime());
+            if (queue.isEmpty() && tryTake(System.nanoTime())) {
+                admitted.incrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            }
+            if (queue.size() >= maxQueue) {
+                rejected.incrementAndGet();
+                return CompletableFuture.failedFuture(new BulkheadFullException(name, "queue is full"));
+            }
+            Waiter waiter = new Waiter(System.nanoTime() + queueTimeoutNanos);
+            queue.addLast(waiter);
+            scheduleDrain();
+            return waiter.future;
+        }
+    }
+
+    /**
+     * El hilo que esperaba se interrumpio: si el turno sigue en cola se retira; si ya se concedio
+     * (o se esta concediendo fuera del lock en {@link #drain}) se devuelve para no perder el permiso.
+     */
+    private void abandon(CompletableFuture<Void> permit) {
+        synchronized (this) {
+            if (queue.removeIf(w -> w.future == permit)) {
+                return;
+            }
+        }
+        permit.whenComplete((r, e) -> {
+            if (e == null) {
+                release();
+            }
+        });
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    private void drain() {
+        List<Waiter> admittedNow = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        synchronized (this) {
+            if (pendingDrain != null) {
+                // Drenaje adelantado por un release: el del timer ya no hace falta
+                pendingDrain.cancel(false);
+                pendingDrain = null;
+            }
+            long now = System.nanoTime();
+            refill(now);
+            for (Iterator<Waiter> it = queue.iterator(); it.hasNext(); ) {
+                Waiter w = it.next();
+                if (w.deadlineNanos <= now) {
+                    it.remove();
+                    expired.add(w);
+                }
+            }
+            while (!queue.isEmpty() && tryTake(now)) {
+                admittedNow.add(queue.pollFirst());
+            }
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+        // Los futuros se completan fuera del lock: la llamada arranca en este mismo hilo
+        for (Waiter w : expired) {
+            rejected.incrementAndGet();
+            w.future.completeExceptionally(new BulkheadFullException(name, "timed out waiting in queue"));
+        }
+        for (Waiter w : admittedNow) {
+            admitted.incrementAndGet();
+            w.future.complete(null);
+        }
+    }
+
+    /**
+     * Requiere el lock. Programa el siguiente drenaje para el plazo del primero en cola o, si se espera
+     * a la tasa o a la pausa, para el proximo token. La falta de hueco (inFlight) no se vigila con el timer:
+     * cada {@link #release} ya drena la cola.
+     */
+    private void scheduleDrain() {
+        if (pendingDrain != null || queue.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long delay = Math.max(queue.peekFirst().deadlineNanos - now, 0);
+        if (tokens < 1 || now < pausedUntilNanos) {
+            long nextToken = Math.max(pausedUntilNanos - now, 0);
+            if (tokens < 1) {
+                nextToken = Math.max(nextToken, (long) ((1 - tokens) / rate * 1_000_000_000L));
+            }
+            // Minimo de 1 ms para no reprogramar en bucle por errores de redondeo del token
+            delay = Math.min(delay, Math.max(nextToken, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        pendingDrain = timer.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /** Requiere el lock. */
+    private boolean tryTake(long now) {
+        if (now < pausedUntilNanos || inFlight >= maxConcurrent || tokens < 1) {
+            return false;
+        }
+        inFlight++;
+        tokens -= 1;
+        return true;
+    }
+
+    /** Requiere el lock. */
+    private void refill(long now) {
+        if (now > pausedUntilNanos) {
+            long from = Math.max(lastRefillNanos, pausedUntilNanos);
+            tokens = Math.min(burst(), tokens + (now - from) / 1_000_000_000.0 * rate);
+        }
+        lastRefillNanos = now;
+    }
+
+    private double burst() {
+        return Math.max(1, Math.min(rate, maxConcurrent));
+    }
+
+    private static final class Waiter {
+        final long deadlineNanos;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.acme.ocrquarkus.resilience;
+
+/**
+ * La llamada no obtuvo turno en el bulkhead: cola llena o plazo de espera vencido.
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String dependency;
+
+    public BulkheadFullException(String dependency, String reason) {
+        super("Too many concurrent requests to " + dependency + " (" + reason + ")");
+        this.dependency = dependency;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+}
@@ -0,0 +1,76 @@
+package org.acme.ocrquarkus.resilience;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Registro de bulkheads por dependencia. Cada uno se configura con
+ * {@code resilience.bulkhead.<nombre>.*} y todos comparten un unico hilo temporizador.
+ * En vuelo, cola y rechazos se publican en Micrometer con la etiqueta {@code dependency}.
+ */
+@ApplicationScoped
+public class Bulkheads {
+
+    public static final String AZURE_DOCINTEL = "azure-docintel";
+    public static final String HF_ROUTER = "hf-router";
+
+    @Inject
+    OcrMetrics metrics;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bulkhead-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Los de las dependencias conocidas se crean al arrancar para que sus metricas existan desde el principio
+    @PostConstruct
+    void init() {
+        get(AZURE_DOCINTEL);
+        get(HF_ROUTER);
+    }
+
+    public Bulkhead get(String name) {
+        return bulkheads.computeIfAbsent(name, this::create);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        bulkheads.forEach((name, bulkhead) -> m.put(name, bulkhead.stats()));
+        return m;
+    }
+
+    private Bulkhead create(String name) {
+        Config config = ConfigProvider.getConfig();
+        String prefix = "resilience.bulkhead." + name + ".";
+        Bulkhead bulkhead = new Bulkhead(
+                name,
+                config.getOptionalValue(prefix + "max-concurrent", Integer.class).orElse(8),
+                config.getOptionalValue(prefix + "max-rate-per-second", Double.class).orElse(10.0),
+                config.getOptionalValue(prefix + "min-rate-per-second", Double.class).orElse(0.5),
+                config.getOptionalValue(prefix + "rate-increase", Double.class).orElse(0.1),
+                config.getOptionalValue(prefix + "queue-timeout-ms", Long.class).orElse(30_000L),
+                config.getOptionalValue(prefix + "max-queue", Integer.class).orElse(200),
+                timer
+        );
+        metrics.bulkhead(name, bulkhead, Bulkhead::inFlight, Bulkhead::queueDepth, Bulkhead::rejectedCount);
+        return bulkhead;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+    }
+}
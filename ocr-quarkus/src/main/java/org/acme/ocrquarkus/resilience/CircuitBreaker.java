@@ -0,0 +1,240 @@
+package org.acme.ocrquarkus.resilience;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker de una dependencia remota. Cuenta los fallos de una ventana deslizante de llamadas;
+ * al superar el umbral se abre y rechaza al instante con {@link CircuitOpenException}. Pasado el tiempo
+ * de apertura deja pasar unas pocas llamadas de prueba (semiabierto): si salen bien se cierra, si alguna
+ * falla vuelve a abrirse con el doble de espera, hasta {@code max-open-ms}.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final long maxOpenNanos;
+    private final int halfOpenTrials;
+
+    // Estado protegido por 'this'
+    private State state = State.CLOSED;
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAtNanos;
+    private long currentOpenNanos;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openMillis, long maxOpenMillis, int halfOpenTrials) {
+        this.name = name;
+        this.windowSize = Math.max(windowSize, 1);
+        this.minimumCalls = Math.min(Math.max(minimumCalls, 1), this.windowSize);
+        this.failureRateThreshold = Math.min(Math.max(failureRateThreshold, 0.01), 1.0);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(openMillis, 1));
+        this.maxOpenNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(maxOpenMillis), this.openNanos);
+        this.halfOpenTrials = Math.max(halfOpenTrials, 1);
+        this.window = new boolean[this.windowSize];
+        this.currentOpenNanos = this.openNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Ejecuta una llamada bloqueante; {@code isFailure} decide si una excepcion cuenta como fallo de la dependencia. */
+    public <T> T call(Callable<T> call, Predicate<Throwable> isFailure) throws Exception {
+        acquirePermission();
+        try {
+            T result = call.call();
+            onSuccess();
+            return result;
+        } catch (Exception e) {
+            record(e, isFailure);
+            throw e;
+        }
+    }
+
+    /** Variante asincrona: el resultado se registra cuando el futuro termina. */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call, Predicate<Throwable> isFailure) {
+        try {
+            acquirePermission();
+        } catch (CircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((r, e) -> {
+            if (e == null) {
+                onSuccess();
+            } else {
+                record(e, isFailure);
+            }
+        });
+    }
+
+    /** Lanza {@link CircuitOpenException} si el circuito esta abierto o ya no quedan pruebas semiabiertas. */
+    public void acquirePermission() {
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAtNanos >= currentOpenNanos) {
+                state = State.HALF_OPEN;
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+            }
+            if (state == State.CLOSED) {
+                return;
+            }
+            if (state == State.HALF_OPEN && trialsStarted < halfOpenTrials) {
+                trialsStarted++;
+                return;
+            }
+        }
+        shortCircuited.incrementAndGet();
+        throw new CircuitOpenException(name, remainingOpenMillis());
+    }
+
+    public void onSuccess() {
+        successes.incrementAndGet();
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                if (++trialsSucceeded >= halfOpenTrials) {
+                    close();
+                }
+                return;
+            }
+            if (state == State.CLOSED) {
+                push(false);
+            }
+        }
+    }
+
+    public void onFailure() {
+        failures.incrementAndGet();
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                // La dependencia sigue caida: se espera el doble antes de volver a probar
+                open(Math.min(currentOpenNanos * 2, maxOpenNanos));
+                return;
+            }
+            if (state == State.CLOSED) {
+                push(true);
+                if (windowCount >= minimumCalls && (double) windowFailures / windowCount >= failureRateThreshold) {
+                    open(openNanos);
+                }
+            }
+        }
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= currentOpenNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public boolean isOpen() {
+        return state() == State.OPEN;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        synchronized (this) {
+            m.put("state", state().name());
+            m.put("windowCalls", windowCount);
+            m.put("windowFailures", windowFailures);
+            m.put("openMillis", TimeUnit.NANOSECONDS.toMillis(currentOpenNanos));
+        }
+        m.put("retryAfterMillis", remainingOpenMillis());
+        m.put("successes", successes.get());
+        m.put("failures", failures.get());
+        m.put("shortCircuited", shortCircuited.get());
+        m.put("opened", opened.get());
+        return m;
+    }
+
+    private void record(Throwable error, Predicate<Throwable> isFailure) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof CircuitOpenException || cause instanceof BulkheadFullException) {
+            // Rechazo local: no dice nada de la salud de la dependencia, pero libera la prueba semiabierta
+            synchronized (this) {
+                if (state == State.HALF_OPEN && trialsStarted > 0) {
+                    trialsStarted--;
+                }
+            }
+            return;
+        }
+        if (isFailure.test(cause)) {
+            onFailure();
+        } else {
+            onSuccess();
+        }
+    }
+
+    private synchronized long remainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        long remaining = currentOpenNanos - (System.nanoTime() - openedAtNanos);
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 0);
+    }
+
+    /** Requiere el lock. */
+    private void open(long forNanos) {
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+        currentOpenNanos = forNanos;
+        opened.incrementAndGet();
+    }
+
+    /** Requiere el lock. */
+    private void close() {
+        state = State.CLOSED;
+        currentOpenNanos = openNanos;
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    /** Requiere el lock. */
+    private void push(boolean failed) {
+        if (windowCount == windowSize) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+    }
+}
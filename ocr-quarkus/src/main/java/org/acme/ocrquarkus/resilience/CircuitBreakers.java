@@ -0,0 +1,46 @@
+package org.acme.ocrquarkus.resilience;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de circuit breakers por dependencia, configurados con {@code resilience.circuit.<nombre>.*}.
+ */
+@ApplicationScoped
+public class CircuitBreakers {
+
+    public static final String AZURE_DOCINTEL = Bulkheads.AZURE_DOCINTEL;
+    public static final String HF_ROUTER = Bulkheads.HF_ROUTER;
+    public static final String OPENKM = "openkm";
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public CircuitBreaker get(String name) {
+        return breakers.computeIfAbsent(name, this::create);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        breakers.forEach((name, breaker) -> m.put(name, breaker.stats()));
+        return m;
+    }
+
+    private CircuitBreaker create(String name) {
+        Config config = ConfigProvider.getConfig();
+        String prefix = "resilience.circuit." + name + ".";
+        return new CircuitBreaker(
+                name,
+                config.getOptionalValue(prefix + "window-size", Integer.class).orElse(20),
+                config.getOptionalValue(prefix + "minimum-calls", Integer.class).orElse(5),
+                config.getOptionalValue(prefix + "failure-rate-threshold", Double.class).orElse(0.5),
+                config.getOptionalValue(prefix + "open-ms", Long.class).orElse(30_000L),
+                config.getOptionalValue(prefix + "max-open-ms", Long.class).orElse(300_000L),
+                config.getOptionalValue(prefix + "half-open-trials", Integer.class).orElse(2)
+        );
+    }
+}
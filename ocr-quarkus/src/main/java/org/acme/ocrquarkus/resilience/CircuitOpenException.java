@@ -0,0 +1,24 @@
+package org.acme.ocrquarkus.resilience;
+
+/** El circuit breaker de la dependencia esta abierto: la llamada se rechaza sin intentarla. */
+public class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String dependency;
+    private final long retryAfterMillis;
+
+    public CircuitOpenException(String dependency, long retryAfterMillis) {
+        super("Circuit for " + dependency + " is open; retry in " + Math.max(retryAfterMillis / 1000, 1) + "s", null, false, false);
+        this.dependency = dependency;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -4,14 +4,15 @@ import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import org.acme.ocrquarkus.service.AzureStorageService;
+import org.acme.ocrquarkus.storage.BlobStore;
+import org.acme.ocrquarkus.storage.SignedUrlBlobStore;
 
 @Path("/api/storage")
 @Produces(MediaType.APPLICATION_JSON)
 public class AzureDiagResource {
 
     @Inject
-    AzureStorageService storage;
+    BlobStore storage;
 
     @GET
     @Path("/ping")
@@ -24,15 +25,13 @@ public class AzureDiagResource {
                     data.length,
                     "text/plain");
 
-            // Opcional: SAS temporal 10 min
-            String sas = storage.buildReadSasUrl(name, 10);
-
-            return Response.ok(java.util.Map.of(
-                    "uploaded", true,
-                    "blobName", name,
-                    "blobUrl", url,
-                    "sasUrl10min", sas
-            )).build();
+            java.util.Map<String, Object> out = new java.util.HashMap<>();
+            out.put("uploaded", true);
+            out.put("blobName", name);
+            out.put("blobUrl", url);
+            // Opcional: SAS temporal 10 min (el almacen local no firma URLs)
+            out.put("sasUrl10min", storage instanceof SignedUrlBlobStore signed ? signed.buildReadSasUrl(name, 10) : null);
+            return Response.ok(out).build();
         } catch (Exception e) {
             return Response.serverError().entity(java.util.Map.of(
                     "uploaded", false,
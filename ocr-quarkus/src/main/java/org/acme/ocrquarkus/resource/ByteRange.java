@@ -0,0 +1,51 @@
+package org.acme.ocrquarkus.resource;
+
+/**
+ * Rango de bytes de una cabecera {@code Range} (RFC 9110) sobre un recurso de tamano conocido.
+ * Solo se atiende un rango; varios rangos o unidades desconocidas se ignoran y se sirve el recurso completo.
+ */
+record ByteRange(long offset, long length) {
+
+    /** Rango que no se puede satisfacer: se responde 416. */
+    static final ByteRange UNSATISFIABLE = new ByteRange(-1, 0);
+
+    /** @return null si no hay rango aplicable (respuesta completa). */
+    static ByteRange parse(String header, long size) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // bytes=-N: los ultimos N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return UNSATISFIABLE;
+                }
+                long length = Math.min(suffix, size);
+                return new ByteRange(size - length, length);
+            }
+            long start = Long.parseLong(first);
+            if (start >= size) {
+                return UNSATISFIABLE;
+            }
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (end < start) {
+                return null;
+            }
+            return new ByteRange(start, end - start + 1);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    String contentRange(long size) {
+        return "bytes " + offset + "-" + (offset + length - 1) + "/" + size;
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
@@ -12,16 +13,28 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.acme.ocrquarkus.UploadForm;
+import java.util.Optional;
+import org.acme.ocrquarkus.FileUploadForm;
+import org.acme.ocrquarkus.OcrService;
 import org.acme.ocrquarkus.entity.Gasto;
 import org.acme.ocrquarkus.repository.GastoRepository;
+import org.acme.ocrquarkus.repository.GastoResumen;
 import org.acme.ocrquarkus.service.GastoService;
+import io.quarkus.security.identity.SecurityIdentity;
 import org.jboss.resteasy.annotations.providers.multipart.MultipartForm;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
@@ -36,36 +49,67 @@ public class GastoResource {
     @Inject
     GastoRepository gastoRepository;
 
+    @Inject
+    OcrService ocrService;
+
     @Inject
     JsonWebToken jwt;
 
+    @Inject
+    SecurityIdentity identity;
+
+    @Context
+    UriInfo uriInfo;
+
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int LIST_READ_URL_MINUTES = 60;
+    // El archivo se puede reemplazar o borrar: el cliente revalida siempre con ETag/Last-Modified (304 si no cambio);
+    // privado porque la descarga va autenticada
+    private static final String DOWNLOAD_CACHE_CONTROL = "private, no-cache";
+
     @GET
-    public Response list() {
+    public Response list(@QueryParam("after") Long after, @QueryParam("limit") @DefaultValue("50") int limit) {
         try {
-            List<Gasto> all = gastoRepository.listAll();
-            List<Map<String, Object>> out = new ArrayList<>();
-            for (Gasto g : all) {
-                Map<String, Object> m = new HashMap<>();
-                m.put("id", g.idGasto);
-                m.put("id_gasto", g.idGasto);
-                m.put("descripcion", g.descripcion);
-                m.put("lugar", g.lugar);
-                m.put("fecha", g.fecha != null ? g.fecha.toString() : null);
-                m.put("monto", g.monto);
-                m.put("idEvento", g.idEvento);
-                m.put("idTarjeta", g.idTarjeta);
-                m.put("openkmDocUuid", g.getOpenkmDocUuid());
-                String readUrl = null;
-                try {
-                    if (g.getBlobName() != null) {
-                        readUrl = gastoService.buildTempReadUrl(g.idGasto, 60);
-                    }
-                } catch (Exception ignored) {
+            int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+            List<GastoResumen> page = canSeeAllGastos()
+                    ? gastoRepository.listarResumen(after, pageSize)
+                    : gastoRepository.listarResumenPorUsuario(jwt.getSubject(), after, pageSize);
+
+            List<String> blobNames = new ArrayList<>(page.size());
+            for (GastoResumen g : page) {
+                if (g.blobName() != null) {
+                    blobNames.add(g.blobName());
                 }
-                m.put("readUrl", readUrl);
+            }
+            Map<String, String> readUrls = gastoService.buildTempReadUrls(blobNames, LIST_READ_URL_MINUTES);
+
+            List<Map<String, Object>> out = new ArrayList<>(page.size());
+            for (GastoResumen g : page) {
+                Map<String, Object> m = new HashMap<>();
+                m.put("id", g.idGasto());
+                m.put("id_gasto", g.idGasto());
+                m.put("descripcion", g.descripcion());
+                m.put("lugar", g.lugar());
+                m.put("fecha", g.fecha() != null ? g.fecha().toString() : null);
+                m.put("monto", g.monto());
+                m.put("idEvento", g.idEvento());
+                m.put("idTarjeta", g.idTarjeta());
+                m.put("openkmDocUuid", g.openkmDocUuid());
+                m.put("readUrl", g.blobName() != null ? readUrls.get(g.blobName()) : null);
                 out.add(m);
             }
-            return Response.ok(out).build();
+
+            // El cuerpo sigue siendo el arreglo de siempre; el cursor de la siguiente pagina va en cabeceras
+            Response.ResponseBuilder response = Response.ok(out);
+            if (page.size() == pageSize) {
+                Long next = page.get(page.size() - 1).idGasto();
+                response.header("X-Next-Cursor", next)
+                        .link(uriInfo.getRequestUriBuilder()
+                                .replaceQueryParam("after", next)
+                                .replaceQueryParam("limit", pageSize)
+                                .build(), "next");
+            }
+            return response.build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("Error listando gastos: " + e.getMessage()).build();
@@ -94,9 +138,14 @@ public class GastoResource {
     @POST
     @Path("/{id}/archivo")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    public Response uploadFile(@PathParam("id") Long id, @MultipartForm UploadForm form) {
+    public Response uploadFile(@PathParam("id") Long id, @MultipartForm FileUploadForm form) {
+        java.nio.file.Path upload = null;
         try {
-            if (form == null || form.file == null || form.file.length == 0) {
+            if (form == null || form.file == null) {
+                throw new BadRequestException("Archivo no proporcionado");
+            }
+            upload = gastoService.spoolUpload(form.file);
+            if (java.nio.file.Files.size(upload) == 0) {
                 throw new BadRequestException("Archivo no proporcionado");
             }
 
@@ -107,20 +156,102 @@ public class GastoResource {
                     ? "application/octet-stream"
                     : form.contentType;
 
-            Gasto g = gastoService.attachFile(id, form.file, filename, ct, resolveCurrentUserName());
+            Gasto g = gastoService.attachFile(id, upload, filename, ct, resolveCurrentUserName());
 
+            // openkmDocUuid sigue null hasta que el outbox replica el archivo, y Map.of no admite nulos
+            Map<String, Object> out = new HashMap<>();
+            out.put("id", g.idGasto);
+            out.put("blobName", g.getBlobName());
+            out.put("blobUrl", g.getBlobUrl());
+            out.put("fileSize", g.getFileSize());
+            out.put("contentType", g.getFileContentType());
+            out.put("openkmDocUuid", g.getOpenkmDocUuid());
+            return Response.ok(out).build();
+
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error al subir el archivo: " + e.getMessage())
+                    .build();
+        } finally {
+            gastoService.discardUpload(upload);
+        }
+    }
+
+    /**
+     * Subida directa a Blob Storage, paso 1: devuelve un SAS de solo creacion para el blob que el servidor
+     * asigna al gasto. El cliente hace PUT con {@code x-ms-blob-type: BlockBlob} y su Content-Type.
+     */
+    @POST
+    @Path("/{id}/archivo/upload-url")
+    public Response directUploadUrl(@PathParam("id") Long id, Map<String, String> body) {
+        if (!gastoService.supportsSignedUrls()) {
+            return Response.status(Response.Status.NOT_IMPLEMENTED)
+                    .entity("El almacen de archivos no admite subida directa").build();
+        }
+        try {
+            String filename = body != null ? body.get("filename") : null;
+            String contentType = body != null ? body.get("contentType") : null;
+            GastoService.DirectUpload upload = gastoService.prepareDirectUpload(id, filename, contentType, resolveCurrentUserName());
             return Response.ok(Map.of(
-                    "id", g.idGasto,
-                    "blobName", g.getBlobName(),
-                    "blobUrl", g.getBlobUrl(),
-                    "fileSize", g.getFileSize(),
-                    "contentType", g.getFileContentType(),
-                    "openkmDocUuid", g.getOpenkmDocUuid()
+                    "blobName", upload.blobName(),
+                    "uploadUrl", upload.uploadUrl(),
+                    "expiresInMinutes", upload.expiresInMinutes(),
+                    "headers", Map.of(
+                            "x-ms-blob-type", "BlockBlob",
+                            "x-ms-blob-content-type", upload.contentType())
             )).build();
+        } catch (NotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error generando URL de subida: " + e.getMessage())
+                    .build();
+        }
+    }
 
+    /** Subida directa, paso 2: registra en el gasto el blob ya subido (tamano y tipo se leen de Azure). */
+    @POST
+    @Path("/{id}/archivo/register")
+    public Response registerUploadedFile(@PathParam("id") Long id, Map<String, String> body) {
+        try {
+            String blobName = body != null ? body.get("blobName") : null;
+            Gasto g = gastoService.registerUploadedFile(id, blobName, resolveCurrentUserName());
+            Map<String, Object> out = new HashMap<>();
+            out.put("id", g.idGasto);
+            out.put("blobName", g.getBlobName());
+            out.put("blobUrl", g.getBlobUrl());
+            out.put("fileSize", g.getFileSize());
+            out.put("contentType", g.getFileContentType());
+            out.put("openkmDocUuid", g.getOpenkmDocUuid());
+            return Response.ok(out).build();
+        } catch (BadRequestException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (NotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
+        } catch (WebApplicationException e) {
+            throw e;
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("Error al subir el archivo: " + e.getMessage())
+                    .entity("Error registrando el archivo: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    /** OCR del comprobante ya guardado en Blob Storage: el servicio lo lee de Azure y el cliente no reenvia los bytes. */
+    @POST
+    @Path("/{id}/archivo/ocr")
+    public Response ocrFile(@PathParam("id") Long id, @QueryParam("compact") Boolean compact) {
+        try {
+            byte[] bytes = gastoService.readFile(id);
+            String result = ocrService.ocr(bytes, compact != null ? compact : ocrService.isCompactResponses());
+            return Response.ok(result, MediaType.APPLICATION_JSON_TYPE).build();
+        } catch (NotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
+        } catch (WebApplicationException e) {
+            throw e;
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error procesando el archivo: " + e.getMessage())
                     .build();
         }
     }
@@ -128,12 +259,58 @@ public class GastoResource {
     @GET
     @Path("/{id}/archivo")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    public Response downloadFile(@PathParam("id") Long id) {
+    public Response downloadFile(@PathParam("id") Long id, @Context Request request,
+                                 @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange,
+                                 @QueryParam("mode") String mode) {
         try {
+            // Modo redirect: el cliente baja directo de Blob Storage y los bytes no pasan por la JVM
+            Optional<String> redirect = gastoService.downloadRedirectUrl(id, mode);
+            if (redirect.isPresent()) {
+                return Response.status(Response.Status.FOUND)
+                        .location(URI.create(redirect.get()))
+                        .header("Cache-Control", "no-store")
+                        .build();
+            }
+
             GastoService.FileDownloadResult file = gastoService.downloadFile(id);
-            return Response.ok(file.getData())
+            String rawETag = file.getETag() != null ? unquote(file.getETag()) : null;
+            EntityTag etag = rawETag != null ? new EntityTag(rawETag) : null;
+            Date lastModified = Date.from(file.getLastModified());
+
+            // If-None-Match / If-Modified-Since: el navegador ya tiene el comprobante
+            Response.ResponseBuilder notModified = etag != null
+                    ? request.evaluatePreconditions(lastModified, etag)
+                    : request.evaluatePreconditions(lastModified);
+            if (notModified != null) {
+                return notModified.header("Cache-Control", DOWNLOAD_CACHE_CONTROL).build();
+            }
+
+            long size = file.getSize();
+            // If-Range exige comparacion fuerte: un ETag debil (W/), una fecha u otro ETag
+            // significan que el cliente puede tener otra version, y se envia completo
+            boolean rangeApplies = ifRange == null
+                    || (rawETag != null && ifRange.trim().equals("\"" + rawETag + "\""));
+            ByteRange byteRange = rangeApplies ? ByteRange.parse(range, size) : null;
+            if (byteRange == ByteRange.UNSATISFIABLE) {
+                return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header("Content-Range", "bytes */" + size)
+                        .build();
+            }
+            long offset = byteRange != null ? byteRange.offset() : 0;
+            long length = byteRange != null ? byteRange.length() : size;
+
+            StreamingOutput body = out -> gastoService.streamFile(file, offset, length, out);
+            Response.ResponseBuilder response = byteRange != null
+                    ? Response.status(Response.Status.PARTIAL_CONTENT).header("Content-Range", byteRange.contentRange(size))
+                    : Response.ok();
+            return response.entity(body)
                     .type(file.getContentType())
+                    .header("Content-Length", length)
+                    .header("Accept-Ranges", "bytes")
                     .header("Content-Disposition", "inline; filename=\"" + file.getFileName() + "\"")
+                    .header("Cache-Control", DOWNLOAD_CACHE_CONTROL)
+                    .tag(etag)
+                    .lastModified(lastModified)
                     .build();
         } catch (NotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
@@ -160,6 +337,10 @@ public class GastoResource {
     @GET
     @Path("/{id}/archivo/url")
     public Response getTempUrl(@PathParam("id") Long id, @QueryParam("min") @DefaultValue("15") int min) {
+        if (!gastoService.supportsSignedUrls()) {
+            return Response.status(Response.Status.NOT_IMPLEMENTED)
+                    .entity("El almacen de archivos no emite URLs temporales").build();
+        }
         try {
             String url = gastoService.buildTempReadUrl(id, min);
             return Response.ok(Map.of(
@@ -175,6 +356,16 @@ public class GastoResource {
         }
     }
 
+    private static String unquote(String etag) {
+        return etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")
+                ? etag.substring(1, etag.length() - 1)
+                : etag;
+    }
+
+    private boolean canSeeAllGastos() {
+        return identity.hasRole("admin") || identity.hasRole("administrador");
+    }
+
     private String resolveCurrentUserName() {
         if (jwt == null) {
             return null;
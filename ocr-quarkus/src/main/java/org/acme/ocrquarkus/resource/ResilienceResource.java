@@ -0,0 +1,83 @@
+package org.acme.ocrquarkus.resource;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import java.util.Map;
+import org.acme.ocrquarkus.resilience.Bulkheads;
+import org.acme.ocrquarkus.resilience.CircuitBreakers;
+import org.acme.ocrquarkus.service.OpenKmBackfillService;
+import org.acme.ocrquarkus.service.OpenKmOutboxService;
+
+/**
+ * Estado de dependencias, bulkheads, outbox y backfill, y acciones de operacion: solo para administradores.
+ * Las cifras de los bulkheads tambien se publican en {@code /q/metrics}.
+ */
+@Path("/api/resilience")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed({"admin", "administrador"})
+public class ResilienceResource {
+
+    @Inject
+    Bulkheads bulkheads;
+
+    @Inject
+    CircuitBreakers circuitBreakers;
+
+    @Inject
+    OpenKmOutboxService openKmOutboxService;
+
+    @Inject
+    OpenKmBackfillService openKmBackfillService;
+
+    /** En vuelo, profundidad de cola, tasa actual y rechazos de cada dependencia remota. */
+    @GET
+    @Path("/bulkheads")
+    public Map<String, Object> bulkheads() {
+        return bulkheads.stats();
+    }
+
+    /** Estado (CLOSED/OPEN/HALF_OPEN), fallos en la ventana y llamadas cortocircuitadas por dependencia. */
+    @GET
+    @Path("/circuits")
+    public Map<String, Object> circuits() {
+        return circuitBreakers.stats();
+    }
+
+    /** Replicas en OpenKM por estado (pendiente, replicado, descartado, fallido). */
+    @GET
+    @Path("/openkm-outbox")
+    public Map<String, Object> openKmOutbox() {
+        return openKmOutboxService.stats();
+    }
+
+    /** Reencola una replica FALLIDA tras arreglar la causa (p. ej. OpenKM caido mas tiempo del previsto). */
+    @POST
+    @Path("/openkm-outbox/{id}/retry")
+    public Map<String, Object> retryOpenKmOutbox(@PathParam("id") Long id) {
+        if (!openKmOutboxService.retry(id)) {
+            throw new NotFoundException("No hay una replica fallida con id " + id);
+        }
+        return Map.of("requeued", true, "id", id);
+    }
+
+    /** Progreso del backfill de UUID de OpenKM: contadores, checkpoint y ultima pasada completa. */
+    @GET
+    @Path("/openkm-backfill")
+    public Map<String, Object> openKmBackfill() {
+        return openKmBackfillService.stats();
+    }
+
+    /** Lanza una pasada del backfill sin esperar al siguiente ciclo; continua desde el checkpoint. */
+    @POST
+    @Path("/openkm-backfill/run")
+    public Map<String, Object> runOpenKmBackfill() {
+        return Map.of("started", openKmBackfillService.trigger());
+    }
+}
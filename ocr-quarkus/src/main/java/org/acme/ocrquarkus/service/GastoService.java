@@ -2,32 +2,55 @@ package org.acme.ocrquarkus.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
 
 import org.acme.ocrquarkus.entity.Gasto;
 import org.acme.ocrquarkus.repository.GastoRepository;
+import org.acme.ocrquarkus.storage.BlobInfo;
+import org.acme.ocrquarkus.storage.BlobStore;
+import org.acme.ocrquarkus.storage.SignedUrlBlobStore;
+import org.acme.ocrquarkus.telemetry.Tracing;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.DateTimeParseException;
 import java.time.format.TextStyle;
 import java.time.temporal.ChronoField;
+import java.util.Collection;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @ApplicationScoped
 public class GastoService {
 
+    private static final Logger LOG = Logger.getLogger(GastoService.class);
+
     private static final DateTimeFormatter[] SUPPORTED_DATE_FORMATS = new DateTimeFormatter[]{
             DateTimeFormatter.ISO_LOCAL_DATE,
             DateTimeFormatter.ofPattern("dd/MM/uuuu"),
@@ -67,14 +90,49 @@ public class GastoService {
     ObjectMapper objectMapper;
 
     @Inject
-    AzureStorageService azureStorageService;
+    BlobStore blobStore;
+
+    @Inject
+    OpenKmOutboxService openKmOutboxService;
 
     @Inject
-    OpenKmStorageService openKmStorageService;
+    Tracing tracing;
+
+    // Vacio = ${java.io.tmpdir}/gasto-uploads
+    @ConfigProperty(name = "gasto.upload.tmp-dir", defaultValue = "")
+    String uploadTmpDirConfig;
+
+    // proxy: los bytes pasan por este servicio; redirect: 302 a una URL SAS y el cliente baja de Blob Storage
+    @ConfigProperty(name = "gasto.download.mode", defaultValue = "proxy")
+    String downloadMode;
+
+    @ConfigProperty(name = "gasto.download.redirect-min-bytes", defaultValue = "0")
+    long redirectMinBytes;
+
+    @ConfigProperty(name = "gasto.download.redirect-sas-minutes", defaultValue = "5")
+    int redirectSasMinutes;
+
+    @ConfigProperty(name = "gasto.direct-upload.sas-minutes", defaultValue = "15")
+    int directUploadSasMinutes;
+
+    // El SAS no limita el tamano: se comprueba al registrar el blob y antes de leerlo entero para el OCR
+    @ConfigProperty(name = "gasto.file.max-bytes", defaultValue = "20971520")
+    long maxFileBytes;
+
+    private Path uploadTmpDir;
+
+    @PostConstruct
+    void init() {
+        uploadTmpDir = (uploadTmpDirConfig == null || uploadTmpDirConfig.isBlank())
+                ? Path.of(System.getProperty("java.io.tmpdir"), "gasto-uploads")
+                : Path.of(uploadTmpDirConfig);
+    }
     
     @Transactional
+    @WithSpan("gasto.guardar-desde-json")
+    @Timed(value = "ocr.gasto.guardar", histogram = true)
     public Gasto guardarGastoDesdeJson(String jsonStr) throws IOException {
-        System.out.println("JSON recibido en GastoService: " + jsonStr);
+        tracing.setCapped(Span.current(), "gasto.json", jsonStr);
         JsonNode json = objectMapper.readTree(jsonStr);
         
         String nombreEmpresa = json.has("NombreEmpresa") ? json.get("NombreEmpresa").asText() :
@@ -113,8 +171,13 @@ public class GastoService {
 
     // =============== Archivos en Azure (por gasto) ===============
 
-    @Transactional
-    public Gasto attachFile(Long gastoId, byte[] bytes, String originalName, String contentType, String userName) {
+    /**
+     * Sube el archivo a Blob Storage fuera de cualquier transaccion y anota el resultado en una transaccion
+     * corta al final, de modo que no se retiene una conexion a la BD durante la subida. La replica en OpenKM
+     * no va en paralelo sino por el outbox, asi la latencia de la subida es solo la de Azure.
+     */
+    @WithSpan("gasto.attach-file")
+    public Gasto attachFile(@SpanAttribute("gasto.id") Long gastoId, Path file, String originalName, String contentType, String userName) throws IOException {
         Gasto g = gastoRepository.findById(gastoId);
         if (g == null) throw new NotFoundException("Gasto no encontrado: " + gastoId);
 
@@ -127,30 +190,137 @@ public class GastoService {
         String ct = (contentType == null || contentType.isBlank())
                 ? "application/octet-stream" : contentType;
 
-        InputStream in = new ByteArrayInputStream(bytes);
+        long size = Files.size(file);
+        String url = blobStore.upload(blobName, file, ct);
+
+        return recordFile(gastoId, blobName, url, ct, size, storageFileName, userFolder, dateSegments);
+    }
+
+    /**
+     * Primer paso de la subida directa: el servidor elige el blob (misma ruta que {@link #attachFile}) y firma
+     * un SAS de solo creacion para el. El cliente sube con PUT y despues llama a {@link #registerUploadedFile}.
+     */
+    public DirectUpload prepareDirectUpload(Long gastoId, String originalName, String contentType, String userName) {
+        Gasto g = gastoRepository.findById(gastoId);
+        if (g == null) throw new NotFoundException("Gasto no encontrado: " + gastoId);
+
+        // El SAS solo permite crear: un nombre unico por subida evita chocar con un blob ya registrado
+        String token = UUID.randomUUID().toString().substring(0, 8);
+        String blobName = buildBlobPath(sanitizeUserFolder(userName), buildDateSegments(g.fecha))
+                + buildStorageFileName(gastoId, token + "-" + sanitizeFileName(originalName));
+        String ct = (contentType == null || contentType.isBlank())
+                ? inferContentType(originalName, "application/octet-stream") : contentType;
+        String uploadUrl = signedUrlStore().buildWriteSasUrl(blobName, directUploadSasMinutes);
+        return new DirectUpload(blobName, uploadUrl, ct, directUploadSasMinutes);
+    }
+
+    /**
+     * Segundo paso de la subida directa: asocia al gasto el blob ya subido. Tamano y tipo se leen de Azure,
+     * no del cliente, y el blob tiene que estar en la ruta que {@link #prepareDirectUpload} asigna al gasto.
+     */
+    @WithSpan("gasto.register-file")
+    public Gasto registerUploadedFile(@SpanAttribute("gasto.id") Long gastoId, String blobName, String userName) {
+        Gasto g = gastoRepository.findById(gastoId);
+        if (g == null) throw new NotFoundException("Gasto no encontrado: " + gastoId);
 
-        String url = azureStorageService.upload(blobName, in, bytes.length, ct);
+        String userFolder = sanitizeUserFolder(userName);
+        String[] dateSegments = buildDateSegments(g.fecha);
+        String expectedPrefix = buildBlobPath(userFolder, dateSegments) + buildStorageFileName(gastoId, "");
+        if (blobName == null || !blobName.startsWith(expectedPrefix) || blobName.indexOf('/', expectedPrefix.length()) >= 0) {
+            throw new BadRequestException("El blob no corresponde a este gasto");
+        }
 
-        g.setBlobName(blobName);
-        g.setBlobUrl(url);
-        g.setFileContentType(ct);
-        g.setFileSize((long) bytes.length);
-        g.setOpenkmDocUuid(
-                openKmStorageService
-                        .store(g.idGasto, storageFileName, bytes, ct, userFolder, dateSegments)
-                        .orElse(null)
-        );
+        BlobInfo info = blobStore.properties(blobName);
+        if (info.size() > maxFileBytes) {
+            blobStore.delete(blobName);
+            throw tooLarge(info.size());
+        }
+        String storageFileName = extractFileName(blobName, gastoId);
+        String ct = (info.contentType() == null || info.contentType().isBlank()
+                || "application/octet-stream".equals(info.contentType()))
+                ? inferContentType(storageFileName, "application/octet-stream") : info.contentType();
 
-        return g;
+        return recordFile(gastoId, blobName, blobStore.blobUrl(blobName), ct, info.size(),
+                storageFileName, userFolder, dateSegments);
     }
 
-    public FileDownloadResult downloadFile(Long gastoId) throws Exception {
+    /**
+     * Transaccion corta que asocia al gasto un blob ya escrito y encola su replica en OpenKM.
+     * Si el gasto se borro mientras se subia, el blob queda huerfano y se elimina.
+     */
+    private Gasto recordFile(Long gastoId, String blobName, String url, String contentType, long size,
+                             String storageFileName, String userFolder, String[] dateSegments) {
+        try {
+            return QuarkusTransaction.requiringNew().call(() -> {
+                Gasto g = gastoRepository.findById(gastoId);
+                if (g == null) throw new NotFoundException("Gasto no encontrado: " + gastoId);
+
+                g.setBlobName(blobName);
+                g.setBlobUrl(url);
+                g.setFileContentType(contentType);
+                g.setFileSize(size);
+                // La replica en OpenKM la hace el outbox tras el commit; el UUID se anota cuando termine
+                g.setOpenkmDocUuid(null);
+                openKmOutboxService.enqueue(g, storageFileName, contentType, userFolder, dateSegments);
+                return g;
+            });
+        } catch (NotFoundException e) {
+            blobStore.delete(blobName);
+            throw e;
+        }
+    }
+
+    /** Bytes del comprobante del gasto, leidos de Blob Storage; para lanzar el OCR sin que el cliente los reenvie. */
+    public byte[] readFile(Long gastoId) {
         Gasto g = gastoRepository.findById(gastoId);
         if (g == null || g.getBlobName() == null) {
             throw new NotFoundException("Gasto o archivo no encontrado");
         }
+        long size = blobStore.properties(g.getBlobName()).size();
+        if (size > maxFileBytes) {
+            throw tooLarge(size);
+        }
+        return blobStore.readAllBytes(g.getBlobName());
+    }
 
-        byte[] data = azureStorageService.download(g.getBlobName());
+    private WebApplicationException tooLarge(long size) {
+        return new WebApplicationException(Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                .entity("El archivo supera el maximo permitido (" + size + " > " + maxFileBytes + " bytes)")
+                .build());
+    }
+
+    /** Copia el archivo subido a un temporal propio, por bloques; se borra con {@link #discardUpload}. */
+    public Path spoolUpload(InputStream in) throws IOException {
+        Files.createDirectories(uploadTmpDir);
+        Path tmp = Files.createTempFile(uploadTmpDir, "gasto-", ".upload");
+        try (in) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            return tmp;
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    public void discardUpload(Path tmp) {
+        if (tmp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            LOG.warnf(e, "No se pudo borrar el temporal de subida %s", tmp);
+        }
+    }
+
+    /** Metadatos del archivo del gasto; los bytes se copian despues con {@link #streamFile}. */
+    public FileDownloadResult downloadFile(Long gastoId) {
+        Gasto g = gastoRepository.findById(gastoId);
+        if (g == null || g.getBlobName() == null) {
+            throw new NotFoundException("Gasto o archivo no encontrado");
+        }
+
+        BlobInfo info = blobStore.properties(g.getBlobName());
 
         String fileName = extractFileName(g.getBlobName(), gastoId);
         String contentType = g.getFileContentType();
@@ -158,7 +328,12 @@ public class GastoService {
             contentType = inferContentType(fileName, "application/octet-stream");
         }
 
-        return new FileDownloadResult(data, contentType, fileName);
+        return new FileDownloadResult(g.getBlobName(), contentType, fileName,
+                info.size(), info.etag(), info.lastModified().toInstant());
+    }
+
+    public void streamFile(FileDownloadResult file, long offset, long length, OutputStream out) {
+        blobStore.download(file.getBlobName(), file.getETag(), offset, length, out);
     }
 
     @Transactional
@@ -166,7 +341,7 @@ public class GastoService {
         Gasto g = gastoRepository.findById(gastoId);
         if (g == null || g.getBlobName() == null) return false;
 
-        boolean deleted = azureStorageService.delete(g.getBlobName());
+        boolean deleted = blobStore.delete(g.getBlobName());
 
         g.setBlobName(null);
         g.setBlobUrl(null);
@@ -176,12 +351,50 @@ public class GastoService {
         return deleted;
     }
 
+    /**
+     * URL SAS de corta duracion a la que redirigir la descarga, o vacio si se sirve por proxy.
+     * {@code requestedMode} ("proxy"/"redirect") permite al cliente forzar un modo; si es null manda la configuracion.
+     * Los archivos por debajo de {@code redirect-min-bytes} siguen yendo por proxy.
+     */
+    public Optional<String> downloadRedirectUrl(Long gastoId, String requestedMode) {
+        String mode = requestedMode != null && !requestedMode.isBlank() ? requestedMode : downloadMode;
+        // Sin URLs firmadas (almacen local) la descarga siempre va por proxy
+        if (!"redirect".equalsIgnoreCase(mode) || !supportsSignedUrls()) {
+            return Optional.empty();
+        }
+        Gasto g = gastoRepository.findById(gastoId);
+        if (g == null || g.getBlobName() == null) {
+            throw new NotFoundException("Gasto o archivo no encontrado");
+        }
+        if (g.getFileSize() != null && g.getFileSize() < redirectMinBytes) {
+            return Optional.empty();
+        }
+        return Optional.of(signedUrlStore().buildReadSasUrl(g.getBlobName(), redirectSasMinutes));
+    }
+
     public String buildTempReadUrl(Long gastoId, int minutes) {
         Gasto g = gastoRepository.findById(gastoId);
         if (g == null || g.getBlobName() == null) {
             throw new NotFoundException("Gasto o archivo no encontrado");
         }
-        return azureStorageService.buildReadSasUrl(g.getBlobName(), minutes);
+        return signedUrlStore().buildReadSasUrl(g.getBlobName(), minutes);
+    }
+
+    /** URLs SAS (blobName -> URL) para una pagina del listado, firmadas en lote. */
+    public Map<String, String> buildTempReadUrls(Collection<String> blobNames, int minutes) {
+        return supportsSignedUrls() ? signedUrlStore().buildReadSasUrls(blobNames, minutes) : Map.of();
+    }
+
+    /** Si es false (almacen local) no hay URLs firmadas: las descargas van por proxy y no hay subida directa. */
+    public boolean supportsSignedUrls() {
+        return blobStore instanceof SignedUrlBlobStore;
+    }
+
+    private SignedUrlBlobStore signedUrlStore() {
+        if (blobStore instanceof SignedUrlBlobStore signed) {
+            return signed;
+        }
+        throw new IllegalStateException("El almacen de blobs no emite URLs firmadas");
     }
 
     private BigDecimal parseMonto(String rawValue) {
@@ -359,19 +572,29 @@ public class GastoService {
         return normalized.substring(0, 1).toUpperCase(locale) + normalized.substring(1);
     }
 
+    public record DirectUpload(String blobName, String uploadUrl, String contentType, int expiresInMinutes) {
+    }
+
     public static class FileDownloadResult {
-        private final byte[] data;
+        private final String blobName;
         private final String contentType;
         private final String fileName;
+        private final long size;
+        private final String etag;
+        private final Instant lastModified;
 
-        public FileDownloadResult(byte[] data, String contentType, String fileName) {
-            this.data = data;
+        public FileDownloadResult(String blobName, String contentType, String fileName,
+                                  long size, String etag, Instant lastModified) {
+            this.blobName = blobName;
             this.contentType = contentType;
             this.fileName = fileName;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
         }
 
-        public byte[] getData() {
-            return data;
+        public String getBlobName() {
+            return blobName;
         }
 
         public String getContentType() {
@@ -381,5 +604,17 @@ public class GastoService {
         public String getFileName() {
             return fileName;
         }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public Instant getLastModified() {
+            return lastModified;
+        }
     }
 }
@@ -0,0 +1,252 @@
+package org.acme.ocrquarkus.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.acme.ocrquarkus.entity.BatchCheckpoint;
+import org.acme.ocrquarkus.entity.Gasto;
+import org.acme.ocrquarkus.repository.BatchCheckpointRepository;
+import org.acme.ocrquarkus.repository.GastoRepository;
+import org.acme.ocrquarkus.repository.OpenKmOutboxRepository;
+import org.acme.ocrquarkus.resilience.CircuitOpenException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconciliacion periodica de los gastos con archivo pero sin UUID de OpenKM. Recorre la tabla por id en lotes,
+ * resuelve los UUID con concurrencia acotada y, si OpenKM no tiene el documento, lo reencola en el outbox.
+ * El ultimo id completado se guarda en {@link BatchCheckpoint}, asi un reinicio o un circuito abierto
+ * retoma el recorrido donde se quedo.
+ */
+@ApplicationScoped
+public class OpenKmBackfillService {
+
+    private static final Logger LOG = Logger.getLogger(OpenKmBackfillService.class);
+
+    static final String CHECKPOINT = "openkm-uuid-backfill";
+
+    @Inject
+    GastoRepository gastoRepository;
+
+    @Inject
+    OpenKmOutboxRepository outboxRepository;
+
+    @Inject
+    BatchCheckpointRepository checkpointRepository;
+
+    @Inject
+    OpenKmStorageService openKmStorageService;
+
+    @Inject
+    OpenKmOutboxService openKmOutboxService;
+
+    @ConfigProperty(name = "openkm.backfill.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "openkm.backfill.interval-ms", defaultValue = "3600000")
+    long intervalMillis;
+
+    @ConfigProperty(name = "openkm.backfill.initial-delay-ms", defaultValue = "60000")
+    long initialDelayMillis;
+
+    @ConfigProperty(name = "openkm.backfill.batch-size", defaultValue = "100")
+    int batchSize;
+
+    @ConfigProperty(name = "openkm.backfill.concurrency", defaultValue = "4")
+    int concurrency;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "openkm-backfill");
+        t.setDaemon(true);
+        return t;
+    });
+    private ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong resolved = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong unresolved = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile Instant lastRunStarted;
+    private volatile Instant lastRunFinished;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled || !openKmStorageService.isEnabled()) {
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(concurrency, 1), r -> {
+            Thread t = new Thread(r, "openkm-backfill-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, Math.max(initialDelayMillis, 0),
+                Math.max(intervalMillis, 1000), TimeUnit.MILLISECONDS);
+    }
+
+    /** Lanza una pasada sin esperar al siguiente ciclo. Devuelve false si ya hay una en curso o esta deshabilitado. */
+    public boolean trigger() {
+        if (workers == null || running.get() || scheduler.isShutdown()) {
+            return false;
+        }
+        scheduler.execute(this::run);
+        return true;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", workers != null);
+        m.put("running", running.get());
+        m.put("scanned", scanned.get());
+        m.put("resolved", resolved.get());
+        m.put("requeued", requeued.get());
+        m.put("unresolved", unresolved.get());
+        m.put("errors", errors.get());
+        m.put("lastRunStarted", lastRunStarted);
+        m.put("lastRunFinished", lastRunFinished);
+        BatchCheckpoint checkpoint = QuarkusTransaction.requiringNew().call(() -> checkpointRepository.findById(CHECKPOINT));
+        m.put("checkpointId", checkpoint != null ? checkpoint.ultimoId : 0L);
+        m.put("lastFullPass", checkpoint != null ? checkpoint.ultimaPasada : null);
+        return m;
+    }
+
+    private void run() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        lastRunStarted = Instant.now();
+        try {
+            long afterId = QuarkusTransaction.requiringNew().call(() -> checkpointRepository.getOrCreate(CHECKPOINT).ultimoId);
+            int limit = Math.max(batchSize, 1);
+            List<Gasto> batch;
+            do {
+                long from = afterId;
+                batch = QuarkusTransaction.requiringNew().call(() -> gastoRepository.findSinUuidOpenKm(from, limit));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                List<CompletableFuture<Void>> pending = new ArrayList<>(batch.size());
+                for (Gasto g : batch) {
+                    pending.add(CompletableFuture.runAsync(() -> reconcile(g), workers));
+                }
+                // El checkpoint solo avanza cuando el lote entero termino
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+                afterId = batch.get(batch.size() - 1).idGasto;
+                saveCheckpoint(afterId, false);
+            } while (batch.size() >= limit);
+            // Recorrido completo: la siguiente pasada vuelve a empezar desde el principio
+            saveCheckpoint(0, true);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof CircuitOpenException) {
+                LOG.infof("OpenKM no disponible; el backfill de UUID se retoma desde el checkpoint en la siguiente pasada");
+            } else {
+                LOG.errorf(e.getCause(), "Error en el backfill de UUID de OpenKM");
+            }
+        } catch (Exception e) {
+            LOG.errorf(e, "Error en el backfill de UUID de OpenKM");
+        } finally {
+            lastRunFinished = Instant.now();
+            running.set(false);
+        }
+    }
+
+    private void reconcile(Gasto g) {
+        scanned.incrementAndGet();
+        DocumentRef ref = DocumentRef.fromBlobName(g.getBlobName());
+        if (ref == null) {
+            LOG.warnf("Gasto #%s: blob %s fuera de la ruta gastos/{usuario}/{fecha}/archivo, se omite",
+                    g.idGasto, g.getBlobName());
+            unresolved.incrementAndGet();
+            return;
+        }
+        OpenKmStorageService.UuidLookup lookup;
+        try {
+            lookup = openKmStorageService.resolveUuid(g.idGasto, ref.fileName(), ref.userFolder(), ref.dateSegments());
+        } catch (CircuitOpenException e) {
+            // Se propaga para cortar la pasada sin avanzar el checkpoint
+            throw e;
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            LOG.warnf("Gasto #%s: no se pudo consultar OpenKM: %s", g.idGasto, e.getMessage());
+            return;
+        }
+        if (lookup.uuid() != null) {
+            QuarkusTransaction.requiringNew().run(() -> recordUuid(g.idGasto, g.getBlobName(), lookup.uuid()));
+            resolved.incrementAndGet();
+        } else if (!lookup.exists()) {
+            QuarkusTransaction.requiringNew().run(() -> requeue(g.idGasto, g.getBlobName(), ref));
+        } else {
+            unresolved.incrementAndGet();
+        }
+    }
+
+    private void recordUuid(Long idGasto, String blobName, String uuid) {
+        Gasto g = gastoRepository.findById(idGasto);
+        // Solo si el archivo no cambio mientras se consultaba OpenKM
+        if (g != null && blobName.equals(g.getBlobName()) && g.getOpenkmDocUuid() == null) {
+            g.setOpenkmDocUuid(uuid);
+        }
+    }
+
+    private void requeue(Long idGasto, String blobName, DocumentRef ref) {
+        Gasto g = gastoRepository.findById(idGasto);
+        if (g == null || !blobName.equals(g.getBlobName()) || outboxRepository.existsPendiente(idGasto)) {
+            return;
+        }
+        String ct = g.getFileContentType() != null ? g.getFileContentType() : "application/octet-stream";
+        openKmOutboxService.enqueue(g, ref.fileName(), ct, ref.userFolder(), ref.dateSegments());
+        requeued.incrementAndGet();
+        LOG.infof("Gasto #%s no esta en OpenKM; replica reencolada", idGasto);
+    }
+
+    private void saveCheckpoint(long ultimoId, boolean fullPass) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            BatchCheckpoint checkpoint = checkpointRepository.getOrCreate(CHECKPOINT);
+            checkpoint.ultimoId = ultimoId;
+            checkpoint.actualizado = Instant.now();
+            if (fullPass) {
+                checkpoint.ultimaPasada = checkpoint.actualizado;
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /** Partes de la ruta del blob ({@code gastos/{usuario}/{anio}/{mes}/archivo}) que reproducen la ruta en OpenKM. */
+    private record DocumentRef(String userFolder, String[] dateSegments, String fileName) {
+
+        static DocumentRef fromBlobName(String blobName) {
+            String[] parts = blobName.split("/");
+            if (parts.length < 3 || !"gastos".equals(parts[0])) {
+                return null;
+            }
+            return new DocumentRef(parts[1], Arrays.copyOfRange(parts, 2, parts.length - 1), parts[parts.length - 1]);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.acme.ocrquarkus.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.acme.ocrquarkus.entity.Gasto;
+import org.acme.ocrquarkus.entity.OpenKmOutbox;
+import org.acme.ocrquarkus.repository.GastoRepository;
+import org.acme.ocrquarkus.repository.OpenKmOutboxRepository;
+import org.acme.ocrquarkus.resilience.CircuitOpenException;
+import org.acme.ocrquarkus.storage.BlobStore;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbox transaccional de la replica en OpenKM. {@link #enqueue} inserta la replica en la misma transaccion
+ * que asocia el archivo al gasto, asi la subida solo espera a Blob Storage. Un hilo en segundo plano reclama
+ * las replicas vencidas, copia el blob a un temporal, lo sube a OpenKM y guarda el UUID en el gasto.
+ * Los fallos se reintentan con backoff exponencial y jitter hasta {@code max-attempts}; despues quedan FALLIDO.
+ * Las replicas terminadas se borran tras {@code retention-days}; las FALLIDO se conservan para reintentarlas.
+ */
+@ApplicationScoped
+public class OpenKmOutboxService {
+
+    private static final Logger LOG = Logger.getLogger(OpenKmOutboxService.class);
+
+    // La purga de replicas terminadas corre como mucho una vez por hora
+    private static final long PURGE_INTERVAL_MILLIS = Duration.ofHours(1).toMillis();
+
+    /** Evento CDI que despierta al worker cuando la transaccion que encolo hace commit. */
+    public record Enqueued(Long idOutbox) {
+    }
+
+    @Inject
+    OpenKmOutboxRepository outboxRepository;
+
+    @Inject
+    GastoRepository gastoRepository;
+
+    @Inject
+    OpenKmStorageService openKmStorageService;
+
+    @Inject
+    BlobStore blobStore;
+
+    @Inject
+    Event<Enqueued> enqueuedEvent;
+
+    @ConfigProperty(name = "openkm.outbox.poll-interval-ms", defaultValue = "5000")
+    long pollIntervalMillis;
+
+    @ConfigProperty(name = "openkm.outbox.batch-size", defaultValue = "10")
+    int batchSize;
+
+    @ConfigProperty(name = "openkm.outbox.max-attempts", defaultValue = "8")
+    int maxAttempts;
+
+    @ConfigProperty(name = "openkm.outbox.backoff-base-ms", defaultValue = "5000")
+    long backoffBaseMillis;
+
+    @ConfigProperty(name = "openkm.outbox.backoff-max-ms", defaultValue = "900000")
+    long backoffMaxMillis;
+
+    // Si la instancia muere a mitad de una replica, otra la retoma al vencer el lease
+    @ConfigProperty(name = "openkm.outbox.lease-ms", defaultValue = "300000")
+    long leaseMillis;
+
+    // Las replicas REPLICADO/DESCARTADO se borran pasado este plazo; 0 las conserva
+    @ConfigProperty(name = "openkm.outbox.retention-days", defaultValue = "30")
+    int retentionDays;
+
+    @ConfigProperty(name = "gasto.upload.tmp-dir", defaultValue = "")
+    String tmpDirConfig;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "openkm-outbox");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // Solo lo usa el hilo que drena
+    private long nextPurgeMillis;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!openKmStorageService.isEnabled()) {
+            return;
+        }
+        long interval = Math.max(pollIntervalMillis, 100);
+        scheduler.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** Debe llamarse dentro de la transaccion que asocia el archivo al gasto. No hace nada si OpenKM esta deshabilitado. */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueue(Gasto gasto, String storageFileName, String contentType, String userFolder, String[] dateSegments) {
+        if (!openKmStorageService.isEnabled()) {
+            return;
+        }
+        Instant now = Instant.now();
+        OpenKmOutbox entry = new OpenKmOutbox();
+        entry.idGasto = gasto.idGasto;
+        entry.blobName = gasto.getBlobName();
+        entry.nombreArchivo = storageFileName;
+        entry.contentType = contentType;
+        entry.carpetaUsuario = userFolder;
+        entry.segmentosFecha = dateSegments != null ? String.join("/", dateSegments) : null;
+        entry.estado = OpenKmOutbox.Estado.PENDIENTE;
+        entry.proximoIntento = now;
+        entry.creado = now;
+        outboxRepository.persist(entry);
+        enqueuedEvent.fire(new Enqueued(entry.idOutbox));
+    }
+
+    /** Tras el commit no hace falta esperar al siguiente ciclo de polling. */
+    void onEnqueued(@Observes(during = TransactionPhase.AFTER_SUCCESS) Enqueued event) {
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(this::drain);
+        }
+    }
+
+    /** Vuelve a poner en cola una replica FALLIDA con los intentos a cero. */
+    @Transactional
+    public boolean retry(Long idOutbox) {
+        OpenKmOutbox entry = outboxRepository.findById(idOutbox);
+        if (entry == null || entry.estado != OpenKmOutbox.Estado.FALLIDO) {
+            return false;
+        }
+        entry.estado = OpenKmOutbox.Estado.PENDIENTE;
+        entry.intentos = 0;
+        entry.proximoIntento = Instant.now();
+        entry.actualizado = entry.proximoIntento;
+        enqueuedEvent.fire(new Enqueued(entry.idOutbox));
+        return true;
+    }
+
+    @Transactional
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", openKmStorageService.isEnabled());
+        for (OpenKmOutbox.Estado estado : OpenKmOutbox.Estado.values()) {
+            m.put(estado.name().toLowerCase(), outboxRepository.countByEstado(estado));
+        }
+        m.put("maxAttempts", maxAttempts);
+        return m;
+    }
+
+    private void drain() {
+        // Un solo drenaje a la vez por instancia; el polling y los avisos post-commit comparten el hilo
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<OpenKmOutbox> claimed;
+            do {
+                claimed = QuarkusTransaction.requiringNew().call(this::claimBatch);
+                for (OpenKmOutbox entry : claimed) {
+                    process(entry);
+                }
+            } while (claimed.size() >= Math.max(batchSize, 1));
+            purgeFinished();
+        } catch (Exception e) {
+            LOG.errorf(e, "Error drenando el outbox de OpenKM");
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    private void purgeFinished() {
+        long now = System.currentTimeMillis();
+        if (retentionDays <= 0 || now < nextPurgeMillis) {
+            return;
+        }
+        nextPurgeMillis = now + PURGE_INTERVAL_MILLIS;
+        Instant limit = Instant.ofEpochMilli(now).minus(Duration.ofDays(retentionDays));
+        long deleted = QuarkusTransaction.requiringNew().call(() -> outboxRepository.deleteFinishedBefore(limit));
+        if (deleted > 0) {
+            LOG.infof("Outbox de OpenKM: %d replicas terminadas anteriores a %s borradas", deleted, limit);
+        }
+    }
+
+    private List<OpenKmOutbox> claimBatch() {
+        Instant now = Instant.now();
+        Instant leaseUntil = now.plusMillis(Math.max(leaseMillis, 1000));
+        List<OpenKmOutbox> claimed = new ArrayList<>();
+        for (Long id : outboxRepository.findDueIds(now, Math.max(batchSize, 1))) {
+            if (!outboxRepository.claim(id, now, leaseUntil)) {
+                continue;
+            }
+            OpenKmOutbox entry = outboxRepository.findById(id);
+            Gasto gasto = gastoRepository.findById(entry.idGasto);
+            if (gasto == null || !entry.blobName.equals(gasto.getBlobName())) {
+                entry.estado = OpenKmOutbox.Estado.DESCARTADO;
+                entry.actualizado = now;
+                continue;
+            }
+            claimed.add(entry);
+        }
+        return claimed;
+    }
+
+    private void process(OpenKmOutbox entry) {
+        Path tmp = null;
+        try {
+            Path tmpDir = (tmpDirConfig == null || tmpDirConfig.isBlank())
+                    ? Path.of(System.getProperty("java.io.tmpdir"), "gasto-uploads")
+                    : Path.of(tmpDirConfig);
+            Files.createDirectories(tmpDir);
+            tmp = Files.createTempFile(tmpDir, "openkm-", ".replica");
+            blobStore.downloadToFile(entry.blobName, tmp);
+            String[] dateSegments = entry.segmentosFecha != null ? entry.segmentosFecha.split("/") : null;
+            Optional<String> uuid = openKmStorageService.store(entry.idGasto, entry.nombreArchivo, tmp,
+                    entry.contentType, entry.carpetaUsuario, dateSegments);
+            QuarkusTransaction.requiringNew().run(() -> markReplicated(entry.idOutbox, uuid.orElse(null)));
+        } catch (Exception e) {
+            QuarkusTransaction.requiringNew().run(() -> markFailed(entry.idOutbox, e));
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    private void markReplicated(Long idOutbox, String uuid) {
+        OpenKmOutbox entry = outboxRepository.findById(idOutbox);
+        entry.estado = OpenKmOutbox.Estado.REPLICADO;
+        entry.ultimoError = null;
+        entry.actualizado = Instant.now();
+        Gasto gasto = gastoRepository.findById(entry.idGasto);
+        // El archivo pudo reemplazarse mientras se replicaba: solo se anota el UUID si sigue siendo el mismo blob
+        if (gasto != null && entry.blobName.equals(gasto.getBlobName())) {
+            gasto.setOpenkmDocUuid(uuid);
+        }
+        LOG.debugf("Gasto #%s replicado en OpenKM (uuid=%s)", entry.idGasto, uuid);
+    }
+
+    private void markFailed(Long idOutbox, Exception error) {
+        OpenKmOutbox entry = outboxRepository.findById(idOutbox);
+        Instant now = Instant.now();
+        entry.actualizado = now;
+        entry.ultimoError = truncate(error.getClass().getSimpleName() + ": " + error.getMessage());
+        if (error instanceof CircuitOpenException open) {
+            // OpenKM caido: no gasta intento, se vuelve a probar cuando el circuito admita llamadas
+            entry.proximoIntento = now.plusMillis(Math.max(open.getRetryAfterMillis(), backoffBaseMillis));
+            return;
+        }
+        entry.intentos++;
+        if (entry.intentos >= maxAttempts) {
+            entry.estado = OpenKmOutbox.Estado.FALLIDO;
+            LOG.errorf(error, "Replica en OpenKM del gasto #%s fallida tras %d intentos", entry.idGasto, entry.intentos);
+            return;
+        }
+        entry.proximoIntento = now.plus(backoff(entry.intentos));
+        LOG.warnf("Replica en OpenKM del gasto #%s fallo (intento %d/%d), reintento en %s: %s",
+                entry.idGasto, entry.intentos, maxAttempts, Duration.between(now, entry.proximoIntento), error.getMessage());
+    }
+
+    /** Exponencial con jitter: entre la mitad y el total de base * 2^(intento-1), con tope en backoff-max-ms. */
+    private Duration backoff(int attempt) {
+        long exp = backoffBaseMillis << Math.min(attempt - 1, 20);
+        long capped = Math.min(exp <= 0 ? backoffMaxMillis : exp, backoffMaxMillis);
+        long jittered = capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+        return Duration.ofMillis(jittered);
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,16 +1,23 @@
 package org.acme.ocrquarkus.service;
 
+import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.acme.ocrquarkus.http.HttpClients;
+import org.acme.ocrquarkus.http.ManagedHttpClient;
+import org.acme.ocrquarkus.resilience.CircuitBreakers;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,7 +25,9 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -31,33 +40,39 @@ public class OpenKmStorageService {
 
     private static final Logger LOG = Logger.getLogger(OpenKmStorageService.class);
 
+    @Inject
+    CircuitBreakers circuitBreakers;
+
+    @Inject
+    OcrMetrics metrics;
+
     private final boolean enabled;
-    private final boolean failOnError;
-    private final HttpClient httpClient;
+    private final ManagedHttpClient httpClient;
     private final URI baseUri;
     private final URI restBaseUri;
     private final String authorizationHeader;
     private final List<String> rootSegments;
     private final boolean rootHasFixedNode;
+    private final int collectionCacheMaxEntries;
+    // Colecciones que OpenKM confirmo (201/405); las carpetas de usuario/mes casi nunca desaparecen
+    private final Set<String> knownCollections = ConcurrentHashMap.newKeySet();
     private static final Pattern GETETAG_PATTERN = Pattern.compile("<[^>]*getetag[^>]*>([^<]+)</");
     private static final String PROPFIND_GETETAG_BODY = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
             + "<propfind xmlns=\"DAV:\"><prop><getetag/></prop></propfind>";
 
     public OpenKmStorageService(
             @ConfigProperty(name = "openkm.enabled", defaultValue = "false") boolean enabled,
-            @ConfigProperty(name = "openkm.fail-on-error", defaultValue = "true") boolean failOnError,
             @ConfigProperty(name = "openkm.webdav-url", defaultValue = "http://localhost:8087/OpenKM/webdav/") String webDavUrl,
             @ConfigProperty(name = "openkm.collection-root", defaultValue = "okm:root/gastos") String collectionRoot,
             @ConfigProperty(name = "openkm.username", defaultValue = "okmAdmin") String username,
             @ConfigProperty(name = "openkm.password", defaultValue = "admin") String password,
-            @ConfigProperty(name = "openkm.root-fixed-node", defaultValue = "true") boolean rootHasFixedNode
+            @ConfigProperty(name = "openkm.root-fixed-node", defaultValue = "true") boolean rootHasFixedNode,
+            @ConfigProperty(name = "openkm.collection-cache.max-entries", defaultValue = "10000") int collectionCacheMaxEntries,
+            HttpClients httpClients
     ) {
         this.enabled = enabled;
-        this.failOnError = failOnError;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(20))
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .build();
+        this.httpClient = httpClients.get(HttpClients.OPENKM);
+        this.collectionCacheMaxEntries = Math.max(collectionCacheMaxEntries, 0);
 
         if (enabled) {
             this.baseUri = URI.create(ensureTrailingSlash(webDavUrl));
@@ -76,52 +91,111 @@ public class OpenKmStorageService {
 
     /**
      * Replica el archivo en OpenKM bajo la ruta configurada (gastos/{usuario}/{anio}/{mes}/archivo).
-     * @return Ruta relativa dentro de OpenKM si se sube correctamente.
+     * Cualquier fallo se propaga para que {@link OpenKmOutboxService} reprograme el intento.
+     * @return UUID del documento en OpenKM, si se pudo resolver.
      */
-    public Optional<String> store(Long gastoId, String storedFileName, byte[] contents, String contentType, String userFolder, String[] dateSegments) {
+    @WithSpan("openkm.store")
+    public Optional<String> store(@SpanAttribute("gasto.id") Long gastoId, String storedFileName, Path contents, String contentType, String userFolder, String[] dateSegments) throws Exception {
         if (!enabled) {
             return Optional.empty();
         }
 
-        String safeName = sanitizeFileName(storedFileName);
-        List<String> folder = new ArrayList<>(rootSegments);
-        folder.add(sanitizeFolderName(userFolder, "sin-usuario"));
-        if (dateSegments != null) {
-            for (String segment : dateSegments) {
-                folder.add(sanitizeFolderName(segment, "sin-fecha"));
+        List<String> document = documentPath(gastoId, storedFileName, userFolder, dateSegments);
+        List<String> folder = document.subList(0, document.size() - 1);
+
+        // Con OpenKM caido el circuito se abre y las subidas fallan al instante sin esperar los timeouts
+        circuitBreakers.get(CircuitBreakers.OPENKM).call(() -> {
+            boolean folderKnown = knownCollections.contains(joinSegments(folder));
+            if (!folderKnown) {
+                ensureCollections(folder);
+            }
+            try {
+                uploadDocument(document, contents, normalizeContentType(contentType));
+            } catch (OpenKmHttpException e) {
+                if (e.status != 404 && e.status != 409) {
+                    throw e;
+                }
+                // La carpeta ya no existe (borrada o movida en OpenKM): se olvida la cache y se recrea
+                forgetCollections(folder);
+                if (!folderKnown) {
+                    throw e;
+                }
+                ensureCollections(folder);
+                uploadDocument(document, contents, normalizeContentType(contentType));
             }
+            return null;
+        }, OpenKmStorageService::isUnavailable);
+        String okmPath = String.join("/", document);
+        LOG.debugf("Documento de gasto #%s replicado en OpenKM en %s", gastoId, okmPath);
+        try {
+            return fetchUuidFromWebDav(document);
+        } catch (Exception e) {
+            // El fallback por REST lo hace OpenKmBackfillService en segundo plano, fuera de la subida
+            LOG.warnf("No se pudo obtener el UUID del documento %s via WebDAV: %s", okmPath, e.getMessage());
+            return Optional.empty();
         }
-        List<String> document = new ArrayList<>(folder);
-        document.add(ensureFileNameHasIdPrefix(gastoId, safeName));
+    }
 
-        try {
-            ensureCollections(folder);
-            uploadDocument(document, contents, normalizeContentType(contentType));
-            String okmPath = String.join("/", document);
-            LOG.debugf("Documento de gasto #%s replicado en OpenKM en %s", gastoId, okmPath);
+    /**
+     * Resuelve el UUID de un documento ya replicado: PROPFIND y, si no trae {@code getetag}, getUuidFromPath por REST.
+     * Solo un 404 del PROPFIND indica que el documento no esta y hay que volver a subirlo.
+     */
+    @WithSpan("openkm.resolve-uuid")
+    public UuidLookup resolveUuid(@SpanAttribute("gasto.id") Long gastoId, String storedFileName, String userFolder, String[] dateSegments) throws Exception {
+        if (!enabled) {
+            return new UuidLookup(true, null);
+        }
+        List<String> document = documentPath(gastoId, storedFileName, userFolder, dateSegments);
+        String okmPath = String.join("/", document);
+        return circuitBreakers.get(CircuitBreakers.OPENKM).call(() -> {
             try {
-                return fetchUuidFromWebDav(document);
-            } catch (IOException | InterruptedException e) {
-                LOG.warnf(e, "No se pudo obtener el UUID del documento %s vA­a WebDAV, probando REST", okmPath);
-                try {
-                    return fetchUuidFromPath(okmPath);
-                } catch (IOException | InterruptedException ex) {
-                    LOG.warnf(ex, "No se pudo obtener el UUID del documento %s vA­a REST", okmPath);
-                    return Optional.empty();
+                Optional<String> uuid = fetchUuidFromWebDav(document);
+                if (uuid.isPresent()) {
+                    return new UuidLookup(true, uuid.get());
+                }
+            } catch (OpenKmHttpException e) {
+                if (e.status == 404) {
+                    return new UuidLookup(false, null);
+                }
+                if (e.status >= 500) {
+                    throw e;
                 }
             }
-        } catch (Exception ex) {
-            LOG.errorf(ex, "Error replicando documento de gasto #%s en OpenKM", gastoId);
-            if (failOnError) {
-                throw new IllegalStateException("No se pudo guardar el archivo en OpenKM", ex);
+            return new UuidLookup(true, fetchUuidFromPath(okmPath).orElse(null));
+        }, OpenKmStorageService::isUnavailable);
+    }
+
+    /** {@code exists=false}: OpenKM no tiene el documento. {@code uuid=null} con {@code exists=true}: no se pudo resolver. */
+    public record UuidLookup(boolean exists, String uuid) {
+    }
+
+    /** Ruta del documento en OpenKM: raiz configurada, usuario, segmentos de fecha y archivo con prefijo del gasto. */
+    private List<String> documentPath(Long gastoId, String storedFileName, String userFolder, String[] dateSegments) {
+        List<String> document = new ArrayList<>(rootSegments);
+        document.add(sanitizeFolderName(userFolder, "sin-usuario"));
+        if (dateSegments != null) {
+            for (String segment : dateSegments) {
+                document.add(sanitizeFolderName(segment, "sin-fecha"));
             }
-            return Optional.empty();
         }
+        document.add(ensureFileNameHasIdPrefix(gastoId, sanitizeFileName(storedFileName)));
+        return document;
     }
 
+    /**
+     * Crea con MKCOL solo los tramos de la carpeta posteriores al prefijo mas largo que ya consta
+     * en {@link #knownCollections}; con la carpeta completa en cache no envia ninguna peticion.
+     */
     private void ensureCollections(List<String> segments) throws IOException, InterruptedException {
-        List<String> current = new ArrayList<>();
-        for (int i = 0; i < segments.size(); i++) {
+        int start = 0;
+        for (int i = segments.size(); i > 0; i--) {
+            if (knownCollections.contains(joinSegments(segments.subList(0, i)))) {
+                start = i;
+                break;
+            }
+        }
+        List<String> current = new ArrayList<>(segments.subList(0, start));
+        for (int i = start; i < segments.size(); i++) {
             String segment = segments.get(i);
             current.add(segment);
 
@@ -136,33 +210,80 @@ public class OpenKmStorageService {
                     .method("MKCOL", HttpRequest.BodyPublishers.noBody())
                     .build();
 
-            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            HttpResponse<Void> response = send("MKCOL", request, HttpResponse.BodyHandlers.discarding());
             int status = response.statusCode();
-            if (status == 201 || status == 405 || status == 409) {
-                continue; // creado, ya existA­a o raA­z protegida
+            if (status == 201 || status == 405) {
+                rememberCollection(joinSegments(current));
+                continue; // creado, ya existA­a
+            }
+            if (status == 409) {
+                continue; // padre inexistente o raiz protegida: no se cachea, el PUT lo confirmara
             }
             if (status >= 200 && status < 300) {
+                rememberCollection(joinSegments(current));
                 continue;
             }
-            throw new IllegalStateException("MKCOL " + joinSegments(current) + " => " + status);
+            throw new OpenKmHttpException("MKCOL " + joinSegments(current), status);
         }
     }
 
-    private void uploadDocument(List<String> pathSegments, byte[] payload, String contentType) throws IOException, InterruptedException {
+    private void uploadDocument(List<String> pathSegments, Path payload, String contentType) throws IOException, InterruptedException {
         HttpRequest request = HttpRequest.newBuilder(resolve(joinSegments(pathSegments)))
                 .header("Authorization", authorizationHeader)
                 .header("Content-Type", contentType)
                 .timeout(Duration.ofSeconds(60))
-                .PUT(HttpRequest.BodyPublishers.ofByteArray(payload))
+                .PUT(HttpRequest.BodyPublishers.ofFile(payload))
                 .build();
 
-        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        HttpResponse<Void> response = send("PUT", request, HttpResponse.BodyHandlers.discarding());
         int status = response.statusCode();
         if (status < 200 || status >= 300) {
-            throw new IllegalStateException("PUT " + String.join("/", pathSegments) + " => " + status);
+            throw new OpenKmHttpException("PUT " + String.join("/", pathSegments), status);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void rememberCollection(String encodedPath) {
+        // Tope simple: al llenarse se vacia y se repuebla con las carpetas en uso
+        if (knownCollections.size() >= collectionCacheMaxEntries) {
+            knownCollections.clear();
+        }
+        if (collectionCacheMaxEntries > 0) {
+            knownCollections.add(encodedPath);
+        }
+    }
+
+    /** Olvida la carpeta y sus ancestros: no se sabe que nivel desaparecio. */
+    private void forgetCollections(List<String> segments) {
+        for (int i = segments.size(); i > 0; i--) {
+            knownCollections.remove(joinSegments(segments.subList(0, i)));
         }
     }
 
+    private <T> HttpResponse<T> send(String method, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<T> response = httpClient.send(request, handler);
+            metrics.openKmCall(method, System.nanoTime() - start, response.statusCode());
+            return response;
+        } catch (IOException e) {
+            metrics.remoteFailure(OcrMetrics.OPENKM, "io");
+            throw e;
+        }
+    }
+
+    /** Red, timeouts y 5xx cuentan como fallo de OpenKM; un 4xx es problema de la peticion. */
+    private static boolean isUnavailable(Throwable e) {
+        if (e instanceof IOException) {
+            return true;
+        }
+        return e instanceof OpenKmHttpException http && http.status >= 500;
+    }
+
     private URI resolve(String encodedPath) {
         return URI.create(baseUri.toString() + encodedPath);
     }
@@ -180,7 +301,7 @@ public class OpenKmStorageService {
                 .method("PROPFIND", HttpRequest.BodyPublishers.ofString(PROPFIND_GETETAG_BODY))
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = send("PROPFIND", request, HttpResponse.BodyHandlers.ofString());
         int status = response.statusCode();
         if (status == 207 || (status >= 200 && status < 300)) {
             String body = response.body();
@@ -194,7 +315,7 @@ public class OpenKmStorageService {
                 }
             }
         } else {
-            LOG.warnf("OpenKM PROPFIND %s => %s", encodedPath, status);
+            throw new OpenKmHttpException("PROPFIND " + encodedPath, status);
         }
         return Optional.empty();
     }
@@ -212,7 +333,7 @@ public class OpenKmStorageService {
                 .GET()
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = send("GET", request, HttpResponse.BodyHandlers.ofString());
         int status = response.statusCode();
         if (status >= 200 && status < 300) {
             String body = response.body();
@@ -309,4 +430,15 @@ public class OpenKmStorageService {
     private String normalizeContentType(String contentType) {
         return (contentType == null || contentType.isBlank()) ? "application/octet-stream" : contentType;
     }
+
+    private static final class OpenKmHttpException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        OpenKmHttpException(String request, int status) {
+            super(request + " => " + status);
+            this.status = status;
+        }
+    }
 }
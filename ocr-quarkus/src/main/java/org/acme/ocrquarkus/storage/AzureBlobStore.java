@@ -0,0 +1,235 @@
+package org.acme.ocrquarkus.storage;
+
+import com.azure.storage.blob.*;
+import com.azure.storage.blob.models.*;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import com.azure.storage.blob.options.BlobUploadFromFileOptions;
+import com.azure.storage.blob.sas.BlobSasPermission;
+import com.azure.storage.blob.sas.BlobServiceSasSignatureValues;
+import com.azure.storage.common.StorageSharedKeyCredential;
+
+import io.micrometer.core.annotation.Timed;
+import io.quarkus.arc.DefaultBean;
+import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.ocrquarkus.telemetry.OcrMetrics;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+/** Comprobantes en un contenedor de Azure Blob Storage, con URLs SAS firmadas en memoria. */
+@ApplicationScoped
+@DefaultBean
+public class AzureBlobStore implements SignedUrlBlobStore {
+
+    private final String accountName;
+    private final BlobContainerClient containerClient;
+    private final StorageSharedKeyCredential credential;
+    private final SasUrlCache sasCache;
+    private final ParallelTransferOptions uploadTransferOptions;
+
+    // Una URL reutilizada puede llegar a un Azure con el reloj algo adelantado
+    private static final Duration SAS_CLOCK_SKEW = Duration.ofMinutes(5);
+
+    public AzureBlobStore(
+            @ConfigProperty(name = "azure.storage.account-name") String accountName,
+            @ConfigProperty(name = "azure.storage.account-key") String accountKey,
+            @ConfigProperty(name = "azure.storage.container-name") String containerName,
+            @ConfigProperty(name = "azure.storage.sas.bucket-minutes", defaultValue = "5") int sasBucketMinutes,
+            @ConfigProperty(name = "azure.storage.sas.cache-max-entries", defaultValue = "5000") int sasCacheMaxEntries,
+            @ConfigProperty(name = "azure.storage.upload.block-size-kb", defaultValue = "2048") int blockSizeKb,
+            @ConfigProperty(name = "azure.storage.upload.max-single-upload-kb", defaultValue = "4096") int maxSingleUploadKb,
+            @ConfigProperty(name = "azure.storage.upload.max-concurrency", defaultValue = "4") int uploadConcurrency,
+            OcrMetrics metrics
+    ) {
+        this.accountName = accountName;
+        this.credential = new StorageSharedKeyCredential(accountName, accountKey);
+
+        String endpoint = String.format("https://%s.blob.core.windows.net", accountName);
+
+        BlobServiceClient service = new BlobServiceClientBuilder()
+                .endpoint(endpoint)
+                .credential(credential)
+                .buildClient();
+
+        BlobContainerClient c = service.getBlobContainerClient(containerName);
+        if (!c.exists()) c = service.createBlobContainer(containerName);
+        this.containerClient = c;
+        this.uploadTransferOptions = new ParallelTransferOptions()
+                .setBlockSizeLong(Math.max(blockSizeKb, 64) * 1024L)
+                .setMaxSingleUploadSizeLong(Math.max(maxSingleUploadKb, 64) * 1024L)
+                .setMaxConcurrency(Math.max(uploadConcurrency, 1));
+        this.sasCache = new SasUrlCache(Duration.ofMinutes(Math.max(sasBucketMinutes, 1)).toMillis(), sasCacheMaxEntries);
+        metrics.sasUrlCache(sasCache, SasUrlCache::hits, SasUrlCache::misses, SasUrlCache::size);
+    }
+
+    /** Sube un stream de longitud conocida; el Content-Type viaja en la misma llamada. */
+    @Override
+    @WithSpan("azure.blob.upload")
+    @Timed(value = "ocr.blob.upload", histogram = true)
+    public String upload(@SpanAttribute("blob.name") String blobName, InputStream data,
+                         @SpanAttribute("blob.size") long length, String contentType) {
+        BlobClient blob = containerClient.getBlobClient(blobName);
+        BlobParallelUploadOptions options = new BlobParallelUploadOptions(data)
+                .setParallelTransferOptions(uploadTransferOptions);
+        if (contentType != null && !contentType.isBlank()) {
+            options.setHeaders(new BlobHttpHeaders().setContentType(contentType));
+        }
+        blob.uploadWithResponse(options, null, null);
+        return blob.getBlobUrl(); // no pública si el contenedor es privado
+    }
+
+    /**
+     * Sube un archivo local. Hasta {@code max-single-upload} va en un solo PUT; por encima se parte en bloques
+     * que se suben en paralelo leyendo del archivo, asi que en memoria solo hay los bloques en vuelo.
+     * El Content-Type viaja en la misma llamada.
+     */
+    @Override
+    @WithSpan("azure.blob.upload")
+    @Timed(value = "ocr.blob.upload", histogram = true)
+    public String upload(@SpanAttribute("blob.name") String blobName, Path file, String contentType) {
+        BlobClient blob = containerClient.getBlobClient(blobName);
+        BlobUploadFromFileOptions options = new BlobUploadFromFileOptions(file.toString())
+                .setParallelTransferOptions(uploadTransferOptions);
+        if (contentType != null && !contentType.isBlank()) {
+            options.setHeaders(new BlobHttpHeaders().setContentType(contentType));
+        }
+        blob.uploadFromFileWithResponse(options, null, null);
+        return blob.getBlobUrl(); // no pública si el contenedor es privado
+    }
+
+    /** URL del blob sin SAS (no pública si el contenedor es privado). */
+    @Override
+    public String blobUrl(String blobName) {
+        return containerClient.getBlobClient(blobName).getBlobUrl();
+    }
+
+    /** Tamano, ETag y fecha del blob (un HEAD); sustituye al exists() previo a la descarga. */
+    @Override
+    @WithSpan("azure.blob.properties")
+    public BlobInfo properties(@SpanAttribute("blob.name") String blobName) {
+        try {
+            BlobProperties p = containerClient.getBlobClient(blobName).getProperties();
+            return new BlobInfo(p.getBlobSize(), p.getETag(), p.getLastModified(), p.getContentType());
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == 404) {
+                throw new jakarta.ws.rs.NotFoundException("Blob no encontrado: " + blobName);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Copia {@code count} bytes del blob desde {@code offset} directamente a {@code out}, a medida que llegan.
+     * Con {@code etag} la descarga falla si el blob cambio desde que se leyeron sus propiedades.
+     */
+    @Override
+    @WithSpan("azure.blob.download")
+    public void download(@SpanAttribute("blob.name") String blobName, String etag, long offset, long count,
+                         OutputStream out) {
+        BlobRequestConditions conditions = etag != null ? new BlobRequestConditions().setIfMatch(etag) : null;
+        containerClient.getBlobClient(blobName)
+                .downloadStreamWithResponse(out, new BlobRange(offset, count), null, conditions, false, null, null);
+    }
+
+    @Override
+    public boolean delete(String blobName) {
+        return containerClient.getBlobClient(blobName).deleteIfExists();
+    }
+
+    @Override
+    public List<String> list() {
+        return StreamSupport.stream(containerClient.listBlobs().spliterator(), false)
+                .map(BlobItem::getName)
+                .toList();
+    }
+
+    /**
+     * SAS de solo lectura por al menos N minutos (útil para frontends). No consulta Azure: la URL sale
+     * de la cache o se firma en memoria con la clave de la cuenta. El gasto en BD es quien dice si hay archivo.
+     */
+    @Override
+    @Timed(value = "ocr.blob.sas", histogram = true)
+    public String buildReadSasUrl(String blobName, int minutes) {
+        return signedReadUrl(blobName, sasCache.expiryFor(System.currentTimeMillis(), minutes));
+    }
+
+    /**
+     * SAS de solo creacion para un unico blob elegido por el servidor: el cliente sube directo a Blob Storage
+     * con un PUT y los bytes no pasan por este servicio. Sin permiso de escritura el blob no se puede
+     * sobrescribir una vez creado, ni siquiera dentro de la validez del SAS. No se cachea.
+     */
+    @Override
+    public String buildWriteSasUrl(String blobName, int minutes) {
+        BlobClient blob = containerClient.getBlobClient(blobName);
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        BlobServiceSasSignatureValues values = new BlobServiceSasSignatureValues(
+                now.plusMinutes(Math.max(minutes, 1)),
+                new BlobSasPermission().setCreatePermission(true))
+                .setStartTime(now.minus(SAS_CLOCK_SKEW));
+        return blob.getBlobUrl() + "?" + blob.generateSas(values);
+    }
+
+    /** Contenido completo del blob; para el OCR de comprobantes subidos directamente a Blob Storage. */
+    @Override
+    @WithSpan("azure.blob.read")
+    public byte[] readAllBytes(@SpanAttribute("blob.name") String blobName) {
+        try {
+            return containerClient.getBlobClient(blobName).downloadContent().toBytes();
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == 404) {
+                throw new jakarta.ws.rs.NotFoundException("Blob no encontrado: " + blobName);
+            }
+            throw e;
+        }
+    }
+
+    /** Copia el blob a un archivo local, en bloques y sin pasar por el heap. */
+    @Override
+    @WithSpan("azure.blob.download-to-file")
+    public void downloadToFile(@SpanAttribute("blob.name") String blobName, Path target) {
+        containerClient.getBlobClient(blobName).downloadToFile(target.toString(), true);
+    }
+
+    /**
+     * SAS de solo lectura para varios blobs con una misma expiracion, firmados localmente y sin comprobar
+     * que existan: para listados, donde un exists() por fila es un round trip.
+     */
+    @Override
+    @Timed(value = "ocr.blob.sas.batch", histogram = true)
+    public Map<String, String> buildReadSasUrls(Collection<String> blobNames, int minutes) {
+        Map<String, String> urls = new HashMap<>();
+        long expiryMillis = sasCache.expiryFor(System.currentTimeMillis(), minutes);
+        for (String blobName : blobNames) {
+            if (blobName != null && !urls.containsKey(blobName)) {
+                urls.put(blobName, signedReadUrl(blobName, expiryMillis));
+            }
+        }
+        return urls;
+    }
+
+    private String signedReadUrl(String blobName, long expiryMillis) {
+        return sasCache.get(blobName, expiryMillis, exp -> {
+            BlobClient blob = containerClient.getBlobClient(blobName);
+            BlobServiceSasSignatureValues values = new BlobServiceSasSignatureValues(
+                    OffsetDateTime.ofInstant(Instant.ofEpochMilli(exp), ZoneOffset.UTC),
+                    new BlobSasPermission().setReadPermission(true))
+                    .setStartTime(OffsetDateTime.now(ZoneOffset.UTC).minus(SAS_CLOCK_SKEW))
+                    .setContentDisposition("inline");
+            // https://<account>.blob.core.windows.net/<container>/<blob>?<sas>
+            return blob.getBlobUrl() + "?" + blob.generateSas(values);
+        });
+    }
+}
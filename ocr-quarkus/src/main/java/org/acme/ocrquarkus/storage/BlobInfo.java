@@ -0,0 +1,7 @@
+package org.acme.ocrquarkus.storage;
+
+import java.time.OffsetDateTime;
+
+/** Tamano, ETag (entre comillas, como lo envia Azure), fecha y tipo de contenido de un blob. */
+public record BlobInfo(long size, String etag, OffsetDateTime lastModified, String contentType) {
+}
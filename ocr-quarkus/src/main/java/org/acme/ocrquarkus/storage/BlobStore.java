@@ -0,0 +1,37 @@
+package org.acme.ocrquarkus.storage;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Almacen de los comprobantes. {@link AzureBlobStore} es la implementacion por defecto; con
+ * {@code blobstore.type=local} en build se usa {@link LocalBlobStore}, que no necesita la nube
+ * (on-prem y pruebas de carga en local). Los blobs que no existen se reportan con {@code NotFoundException}.
+ * Las URLs firmadas son una capacidad aparte: {@link SignedUrlBlobStore}.
+ */
+public interface BlobStore {
+
+    /** Sube un stream de longitud conocida y devuelve la URL del blob ({@code null} si el almacen no expone URLs). */
+    String upload(String blobName, InputStream data, long length, String contentType);
+
+    /** Sube un archivo local y devuelve la URL del blob ({@code null} si el almacen no expone URLs). */
+    String upload(String blobName, Path file, String contentType);
+
+    /** URL del blob sin firmar, o {@code null} si el almacen no expone URLs. */
+    String blobUrl(String blobName);
+
+    BlobInfo properties(String blobName);
+
+    /** Copia {@code count} bytes desde {@code offset}; con {@code etag} falla si el blob cambio entre medias. */
+    void download(String blobName, String etag, long offset, long count, OutputStream out);
+
+    byte[] readAllBytes(String blobName);
+
+    void downloadToFile(String blobName, Path target);
+
+    boolean delete(String blobName);
+
+    List<String> list();
+}
@@ -0,0 +1,225 @@
+package org.acme.ocrquarkus.storage;
+
+import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Comprobantes en el sistema de archivos local, para on-prem y para pruebas de carga sin la nube.
+ * Cada blob vive en {@code root/<shard>/<blobName>}, donde el shard son dos digitos hex del hash del nombre,
+ * asi ningun directorio de primer nivel acumula todos los usuarios. Las escrituras van a un temporal en el
+ * mismo directorio y se publican con un rename atomico; las descargas copian el rango pedido por bloques.
+ * El backend lee los mismos archivos con la misma ruta ({@code blobstore.local.root} debe coincidir).
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "blobstore.type", stringValue = "local")
+public class LocalBlobStore implements BlobStore {
+
+    private static final Logger LOG = Logger.getLogger(LocalBlobStore.class);
+
+    private static final String TMP_PREFIX = ".upload-";
+
+    private final Path root;
+
+    public LocalBlobStore(@ConfigProperty(name = "blobstore.local.root", defaultValue = "data/blobs") String root) {
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el directorio de blobs " + this.root, e);
+        }
+        LOG.infof("Blob store local en %s", this.root);
+    }
+
+    @Override
+    @WithSpan("local.blob.upload")
+    public String upload(@SpanAttribute("blob.name") String blobName, InputStream data, long length, String contentType) {
+        return publish(blobName, tmp -> {
+            try (data) {
+                Files.copy(data, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+        });
+    }
+
+    @Override
+    @WithSpan("local.blob.upload")
+    public String upload(@SpanAttribute("blob.name") String blobName, Path file, String contentType) {
+        // En Linux Files.copy entre archivos se resuelve en el kernel (copy_file_range/sendfile)
+        return publish(blobName, tmp -> Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    /** Sin URL: la ruta en disco no se expone; el archivo se sirve por {@code /api/gastos/{id}/archivo}. */
+    @Override
+    public String blobUrl(String blobName) {
+        return null;
+    }
+
+    @Override
+    @WithSpan("local.blob.properties")
+    public BlobInfo properties(@SpanAttribute("blob.name") String blobName) {
+        Path path = resolve(blobName);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return new BlobInfo(attrs.size(), etag(attrs),
+                    OffsetDateTime.ofInstant(attrs.lastModifiedTime().toInstant(), ZoneOffset.UTC),
+                    Files.probeContentType(path));
+        } catch (NoSuchFileException e) {
+            throw new NotFoundException("Blob no encontrado: " + blobName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copia el rango con {@link FileChannel#transferTo}. El destino es el {@link OutputStream} de la respuesta,
+     * asi que el JDK copia por bloques a traves de un buffer: no es zero-copy, pero nunca carga el archivo entero.
+     */
+    @Override
+    @WithSpan("local.blob.download")
+    public void download(@SpanAttribute("blob.name") String blobName, String etag, long offset, long count,
+                         OutputStream out) {
+        Path path = resolve(blobName);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (etag != null && !etag.equals(etag(Files.readAttributes(path, BasicFileAttributes.class)))) {
+                throw new IllegalStateException("El blob " + blobName + " cambio durante la descarga");
+            }
+            // No se cierra: cerrar el canal cerraria la respuesta HTTP
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = offset;
+            long end = Math.min(offset + count, channel.size());
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        } catch (NoSuchFileException e) {
+            throw new NotFoundException("Blob no encontrado: " + blobName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    @WithSpan("local.blob.read")
+    public byte[] readAllBytes(@SpanAttribute("blob.name") String blobName) {
+        try {
+            return Files.readAllBytes(resolve(blobName));
+        } catch (NoSuchFileException e) {
+            throw new NotFoundException("Blob no encontrado: " + blobName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    @WithSpan("local.blob.download-to-file")
+    public void downloadToFile(@SpanAttribute("blob.name") String blobName, Path target) {
+        try {
+            Files.copy(resolve(blobName), target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            throw new NotFoundException("Blob no encontrado: " + blobName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean delete(String blobName) {
+        try {
+            return Files.deleteIfExists(resolve(blobName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<String> list() {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().startsWith(TMP_PREFIX))
+                    .map(root::relativize)
+                    .filter(p -> p.getNameCount() > 1)
+                    // Se quita el shard: el nombre del blob es el resto de la ruta
+                    .map(p -> p.subpath(1, p.getNameCount()).toString().replace('\\', '/'))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Escribe en un temporal junto al destino y lo publica con un rename atomico: nadie lee un blob a medias. */
+    private String publish(String blobName, Writer writer) {
+        Path target = resolve(blobName);
+        Path tmp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            tmp = Files.createTempFile(target.getParent(), TMP_PREFIX, ".tmp");
+            writer.write(tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return blobUrl(blobName);
+        } catch (IOException e) {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path resolve(String blobName) {
+        if (blobName == null || blobName.isBlank()) {
+            throw new IllegalArgumentException("Blob name is required");
+        }
+        for (String segment : blobName.split("/")) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..") || segment.startsWith(TMP_PREFIX)) {
+                throw new IllegalArgumentException("Invalid blob name: " + blobName);
+            }
+        }
+        Path path = root.resolve(shard(blobName)).resolve(blobName).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid blob name: " + blobName);
+        }
+        return path;
+    }
+
+    /** Dos digitos hex de {@link String#hashCode()}: estable entre JVMs y facil de replicar en el backend. */
+    static String shard(String blobName) {
+        return String.format("%02x", blobName.hashCode() & 0xff);
+    }
+
+    private static String etag(BasicFileAttributes attrs) {
+        return "\"" + Long.toHexString(attrs.lastModifiedTime().toMillis()) + "-" + Long.toHexString(attrs.size()) + "\"";
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(Path tmp) throws IOException;
+    }
+}
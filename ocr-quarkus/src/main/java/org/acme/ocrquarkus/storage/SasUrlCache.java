@@ -0,0 +1,70 @@
+package org.acme.ocrquarkus.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * URLs SAS de lectura ya firmadas, por blob y por expiracion. Las expiraciones se redondean hacia arriba
+ * a un bucket fijo, asi que todas las peticiones de un mismo blob dentro del bucket reciben la misma URL
+ * (con al menos los minutos pedidos de validez) y la firma solo se calcula al cambiar de bucket.
+ */
+class SasUrlCache {
+
+    private final long bucketMillis;
+    private final Map<String, String> urls;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SasUrlCache(long bucketMillis, int maxEntries) {
+        this.bucketMillis = Math.max(bucketMillis, 1000);
+        int capacity = Math.max(maxEntries, 1);
+        this.urls = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Primer limite de bucket que deja al menos {@code minutes} de validez desde {@code nowMillis}. */
+    long expiryFor(long nowMillis, int minutes) {
+        long earliest = nowMillis + Math.max(minutes, 1) * 60_000L;
+        return ((earliest + bucketMillis - 1) / bucketMillis) * bucketMillis;
+    }
+
+    /** Devuelve la URL cacheada para el blob y la expiracion, o la firma con {@code signer} (expiracion en ms). */
+    String get(String blobName, long expiryMillis, Function<Long, String> signer) {
+        String key = blobName + '\n' + expiryMillis;
+        synchronized (urls) {
+            String cached = urls.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        // Firmar fuera del lock: dos hilos pueden firmar la misma URL, ambas son validas
+        misses.incrementAndGet();
+        String url = signer.apply(expiryMillis);
+        synchronized (urls) {
+            urls.put(key, url);
+        }
+        return url;
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    int size() {
+        synchronized (urls) {
+            return urls.size();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.acme.ocrquarkus.storage;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Capacidad opcional de un {@link BlobStore}: firmar URLs temporales para que el cliente lea o suba directo
+ * contra el almacen. Quien la necesita comprueba {@code instanceof}; sin ella las descargas van por proxy
+ * y no hay subida directa.
+ */
+public interface SignedUrlBlobStore extends BlobStore {
+
+    String buildReadSasUrl(String blobName, int minutes);
+
+    Map<String, String> buildReadSasUrls(Collection<String> blobNames, int minutes);
+
+    String buildWriteSasUrl(String blobName, int minutes);
+}
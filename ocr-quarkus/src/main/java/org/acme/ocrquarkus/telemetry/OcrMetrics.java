@@ -0,0 +1,189 @@
+package org.acme.ocrquarkus.telemetry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Metricas Micrometer del pipeline de escaneo, publicadas en {@code /q/metrics} (Prometheus).
+ * Los temporizadores publican histograma para poder calcular percentiles por etapa.
+ */
+@ApplicationScoped
+public class OcrMetrics {
+
+    public static final String AZURE_DOCINTEL = "azure-docintel";
+    public static final String HF_ROUTER = "hf-router";
+    public static final String OPENKM = "openkm";
+
+    private final MeterRegistry registry;
+
+    public OcrMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Envio del documento a Azure hasta recibir el 202 con operation-location. */
+    public void azureSubmit(long nanos, int status) {
+        timer("ocr.azure.submit", "status", String.valueOf(status)).record(nanos, TimeUnit.NANOSECONDS);
+        if (status < 200 || status >= 300) {
+            remoteFailure(AZURE_DOCINTEL, String.valueOf(status));
+        }
+    }
+
+    /** Cuantas consultas de polling necesito la operacion y cuanto se espero en total. */
+    public void azurePolling(int attempts, long waitNanos, boolean succeeded) {
+        String outcome = succeeded ? "succeeded" : "failed";
+        DistributionSummary.builder("ocr.azure.poll.count")
+                .description("Consultas de polling por operacion de analisis")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(attempts);
+        timer("ocr.azure.poll.wait", "outcome", outcome).record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void llmCall(long nanos, int status) {
+        timer("ocr.llm.latency", "status", String.valueOf(status)).record(nanos, TimeUnit.NANOSECONDS);
+        if (status < 200 || status >= 300) {
+            remoteFailure(HF_ROUTER, String.valueOf(status));
+        }
+    }
+
+    public void llmTokens(Integer promptTokens, Integer completionTokens) {
+        if (promptTokens != null) {
+            tokens("prompt").record(promptTokens);
+        }
+        if (completionTokens != null) {
+            tokens("completion").record(completionTokens);
+        }
+    }
+
+    /** Una llamada WebDAV/REST a OpenKM (MKCOL, PUT, PROPFIND, GET). */
+    public void openKmCall(String method, long nanos, int status) {
+        timer("ocr.openkm.request", "method", method, "status", String.valueOf(status))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (status >= 500) {
+            remoteFailure(OPENKM, String.valueOf(status));
+        }
+    }
+
+    /** Cualquier llamada saliente de los clientes compartidos, por destino y host. */
+    public void httpClientCall(String destination, String host, String method, String status, long nanos) {
+        timer("ocr.http.client.requests",
+                "destination", destination, "host", host == null ? "unknown" : host,
+                "method", method, "status", status)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Fallo de una dependencia remota; {@code status} es el codigo HTTP o {@code "io"} si no hubo respuesta.
+     */
+    public void remoteFailure(String dependency, String status) {
+        Counter.builder("ocr.remote.failures")
+                .description("Fallos de dependencias remotas por codigo de estado")
+                .tag("dependency", dependency)
+                .tag("status", status)
+                .register(registry)
+                .increment();
+    }
+
+    /** Cache de URLs SAS: aciertos y fallos como contadores (se leen del propio cache) y entradas como gauge. */
+    public <T> void sasUrlCache(T cache, ToDoubleFunction<T> hits, ToDoubleFunction<T> misses,
+                                ToDoubleFunction<T> entries) {
+        FunctionCounter.builder("ocr.blob.sas.cache.requests", cache, hits)
+                .description("Peticiones de URL SAS de lectura al cache")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("ocr.blob.sas.cache.requests", cache, misses)
+                .description("Peticiones de URL SAS de lectura al cache")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("ocr.blob.sas.cache.entries", cache, entries)
+                .description("URLs SAS firmadas en el cache")
+                .register(registry);
+    }
+
+    /** Estado de un bulkhead: llamadas en vuelo y en cola (gauges) y rechazos acumulados, por dependencia. */
+    public <T> void bulkhead(String dependency, T bulkhead, ToDoubleFunction<T> inFlight,
+                             ToDoubleFunction<T> queueDepth, ToDoubleFunction<T> rejected) {
+        Gauge.builder("ocr.bulkhead.inflight", bulkhead, inFlight)
+                .description("Llamadas en vuelo a la dependencia")
+                .tag("dependency", dependency)
+                .register(registry);
+        Gauge.builder("ocr.bulkhead.queue.depth", bulkhead, queueDepth)
+                .description("Llamadas esperando turno en el bulkhead")
+                .tag("dependency", dependency)
+                .register(registry);
+        FunctionCounter.builder("ocr.bulkhead.rejected", bulkhead, rejected)
+                .description("Llamadas rechazadas por cola llena o tiempo de espera agotado")
+                .tag("dependency", dependency)
+                .register(registry);
+    }
+
+    /** Como se obtuvieron los campos cuando Azure no los dio con confianza: {@code fast-path} o {@code fallback} al LLM. */
+    public void fieldExtraction(String path) {
+        Counter.builder("ocr.fields.extractions")
+                .description("Extracciones de campos por via rapida local o con el LLM")
+                .tag("path", path)
+                .register(registry)
+                .increment();
+    }
+
+    /** Latencia del LLM que se estima ahorrada en un acierto de la via rapida (media de las llamadas previas). */
+    public void fastPathSaved(long millis) {
+        DistributionSummary.builder("ocr.fast-path.saved")
+                .description("Latencia de LLM ahorrada por la via rapida (estimada)")
+                .baseUnit("milliseconds")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(millis);
+    }
+
+    /**
+     * Cache de resultados OCR: {@code ocr.cache.requests} por nivel (memory/disk) y resultado (hit/miss),
+     * escrituras y entradas en memoria. Los valores se leen del propio cache al publicar.
+     */
+    public <T> void resultCache(T cache, ToDoubleFunction<T> memoryHits, ToDoubleFunction<T> memoryMisses,
+                                ToDoubleFunction<T> diskHits, ToDoubleFunction<T> diskMisses,
+                                ToDoubleFunction<T> stores, ToDoubleFunction<T> entries) {
+        cacheRequests(cache, "memory", "hit", memoryHits);
+        cacheRequests(cache, "memory", "miss", memoryMisses);
+        cacheRequests(cache, "disk", "hit", diskHits);
+        cacheRequests(cache, "disk", "miss", diskMisses);
+        FunctionCounter.builder("ocr.cache.stores", cache, stores)
+                .description("Resultados OCR guardados en el cache")
+                .register(registry);
+        Gauge.builder("ocr.cache.entries", cache, entries)
+                .description("Resultados OCR en el cache en memoria")
+                .register(registry);
+    }
+
+    private <T> void cacheRequests(T cache, String tier, String result, ToDoubleFunction<T> count) {
+        FunctionCounter.builder("ocr.cache.requests", cache, count)
+                .description("Consultas al cache de resultados OCR")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary tokens(String type) {
+        return DistributionSummary.builder("ocr.llm.tokens")
+                .description("Tokens por llamada al LLM")
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
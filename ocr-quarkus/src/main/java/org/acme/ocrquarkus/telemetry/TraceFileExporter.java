@@ -0,0 +1,25 @@
+package org.acme.ocrquarkus.telemetry;
+
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.quarkus.arc.lookup.LookupIfProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+/**
+ * Exportador a archivo para entornos sin collector: cada lote de spans se escribe como OTLP/JSON
+ * en la categoria de log de {@code OtlpJsonLoggingSpanExporter}, que application.properties
+ * redirige al handler de archivo {@code otel-traces}.
+ */
+@ApplicationScoped
+public class TraceFileExporter {
+
+    @Produces
+    @Singleton
+    @LookupIfProperty(name = "ocr.tracing.file.enabled", stringValue = "true")
+    SpanProcessor fileSpanProcessor() {
+        return BatchSpanProcessor.builder(OtlpJsonLoggingSpanExporter.create()).build();
+    }
+}
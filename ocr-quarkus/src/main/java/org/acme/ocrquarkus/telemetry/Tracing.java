@@ -0,0 +1,108 @@
+package org.acme.ocrquarkus.telemetry;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.instrumentation.httpclient.JavaHttpClientTelemetry;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Utilidades de trazas: instrumenta los {@link HttpClient} (span hijo + cabecera {@code traceparent} por llamada),
+ * abre spans para etapas asincronas y recorta los payloads grandes antes de guardarlos como atributos.
+ */
+@ApplicationScoped
+public class Tracing {
+
+    private final OpenTelemetry openTelemetry;
+    private final Tracer tracer;
+    private final int maxAttributeLength;
+
+    public Tracing(
+            OpenTelemetry openTelemetry,
+            @ConfigProperty(name = "ocr.tracing.max-attribute-length", defaultValue = "2048") int maxAttributeLength
+    ) {
+        this.openTelemetry = openTelemetry;
+        this.tracer = openTelemetry.getTracer("ocr-quarkus");
+        this.maxAttributeLength = Math.max(maxAttributeLength, 0);
+    }
+
+    public HttpClient instrument(HttpClient client) {
+        return JavaHttpClientTelemetry.builder(openTelemetry).build().newHttpClient(client);
+    }
+
+    /** Ejecuta {@code body} dentro del span {@code name}, registrando la excepcion si la hay. */
+    public <T> T inSpan(String name, SpanBody<T> body) throws Exception {
+        Span span = tracer.spanBuilder(name).startSpan();
+        Scope scope = span.makeCurrent();
+        try {
+            return body.run(span);
+        } catch (Exception e) {
+            recordError(span, e);
+            throw e;
+        } finally {
+            scope.close();
+            span.end();
+        }
+    }
+
+    /**
+     * Abre {@code name} como span actual mientras se arranca la operacion y lo cierra cuando el futuro termina.
+     */
+    public <T> CompletableFuture<T> inSpanAsync(String name, Function<Span, CompletableFuture<T>> operation) {
+        Span span = tracer.spanBuilder(name).startSpan();
+        CompletableFuture<T> result;
+        Scope scope = span.makeCurrent();
+        try {
+            result = operation.apply(span);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        } finally {
+            scope.close();
+        }
+        return result.whenComplete((r, error) -> {
+            if (error != null) {
+                recordError(span, error);
+            }
+            span.end();
+        });
+    }
+
+    /** Guarda {@code value} recortado a {@code ocr.tracing.max-attribute-length} junto con su longitud real. */
+    public void setCapped(Span span, String key, String value) {
+        if (value == null) {
+            return;
+        }
+        span.setAttribute(key + ".length", value.length());
+        if (maxAttributeLength == 0) {
+            return;
+        }
+        span.setAttribute(key, value.length() <= maxAttributeLength
+                ? value
+                : value.substring(0, maxAttributeLength) + "...[truncated]");
+    }
+
+    /** Recorta un payload para logs con el mismo limite que los atributos. */
+    public String cap(String value) {
+        if (value == null || value.length() <= maxAttributeLength) {
+            return value;
+        }
+        return value.substring(0, maxAttributeLength) + "...[truncated " + (value.length() - maxAttributeLength) + " chars]";
+    }
+
+    public void recordError(Span span, Throwable error) {
+        span.recordException(error);
+        span.setStatus(StatusCode.ERROR, String.valueOf(error.getMessage()));
+    }
+
+    @FunctionalInterface
+    public interface SpanBody<T> {
+        T run(Span span) throws Exception;
+    }
+}
@@ -0,0 +1,114 @@
+package org.acme.ocrquarkus.resilience;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkheadTest {
+
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+
+    @AfterEach
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private Bulkhead bulkhead(int maxConcurrent, long queueTimeoutMillis, int maxQueue) {
+        return new Bulkhead("test", maxConcurrent, 1000, 1, 1, queueTimeoutMillis, maxQueue, timer);
+    }
+
+    @Test
+    void queuesWhenSaturatedAndAdmitsOnRelease() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 5000, 10);
+        CompletableFuture<String> held = new CompletableFuture<>();
+        bulkhead.execute(() -> held);
+
+        CompletableFuture<String> queued = bulkhead.execute(() -> CompletableFuture.completedFuture("ok"));
+        assertEquals(1, bulkhead.inFlight());
+        assertEquals(1, bulkhead.queueDepth());
+        assertFalse(queued.isDone());
+
+        held.complete("done");
+        assertEquals("ok", queued.get(1, TimeUnit.SECONDS));
+        assertEquals(0, bulkhead.inFlight());
+        assertEquals(0, bulkhead.queueDepth());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        Bulkhead bulkhead = bulkhead(1, 5000, 0);
+        bulkhead.execute(CompletableFuture::new);
+
+        CompletableFuture<Object> rejected = bulkhead.execute(() -> CompletableFuture.completedFuture(null));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(BulkheadFullException.class, e.getCause());
+        assertEquals(1, bulkhead.rejectedCount());
+    }
+
+    @Test
+    void rejectsAfterQueueTimeout() {
+        Bulkhead bulkhead = bulkhead(1, 50, 10);
+        bulkhead.execute(CompletableFuture::new);
+
+        long start = System.nanoTime();
+        assertThrows(BulkheadFullException.class, () -> bulkhead.call(() -> "never"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(0, bulkhead.queueDepth());
+        assertEquals(1, bulkhead.rejectedCount());
+    }
+
+    @Test
+    void doesNotPollWhileWaitingForCapacity() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 10_000, 10);
+        bulkhead.execute(CompletableFuture::new);
+        bulkhead.execute(() -> CompletableFuture.completedFuture(null));
+
+        Thread.sleep(200);
+        // Como mucho un drenaje al reponerse el token; despues solo queda el timer del plazo de cola
+        assertTrue(timer.getCompletedTaskCount() <= 1, "drains: " + timer.getCompletedTaskCount());
+        assertEquals(1, bulkhead.queueDepth());
+    }
+
+    @Test
+    void interruptedWaiterDoesNotLeakPermit() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 10_000, 10);
+        CompletableFuture<String> held = new CompletableFuture<>();
+        bulkhead.execute(() -> held);
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                bulkhead.call(() -> "never");
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        waiter.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bulkhead.queueDepth() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, bulkhead.queueDepth());
+
+        waiter.interrupt();
+        waiter.join(5000);
+        assertInstanceOf(InterruptedException.class, error.get());
+        assertEquals(0, bulkhead.queueDepth());
+
+        held.complete("done");
+        assertEquals(0, bulkhead.inFlight());
+        assertEquals("again", bulkhead.call(() -> "again"));
+        assertEquals(0, bulkhead.inFlight());
+    }
+}
@@ -0,0 +1,67 @@
+package org.acme.ocrquarkus.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+
+    private static final Predicate<Throwable> IO_FAILURE = e -> e instanceof IOException;
+
+    private CircuitBreaker breaker(long openMillis) {
+        return new CircuitBreaker("test", 4, 4, 0.5, openMillis, openMillis * 4, 1);
+    }
+
+    private void fail(CircuitBreaker breaker) {
+        assertThrows(IOException.class, () -> breaker.call(() -> {
+            throw new IOException("down");
+        }, IO_FAILURE));
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() throws Exception {
+        CircuitBreaker breaker = breaker(60_000);
+        breaker.call(() -> "ok", IO_FAILURE);
+        breaker.call(() -> "ok", IO_FAILURE);
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertThrows(CircuitOpenException.class, () -> breaker.call(() -> "ok", IO_FAILURE));
+    }
+
+    @Test
+    void nonFailureExceptionsDoNotOpen() {
+        CircuitBreaker breaker = breaker(60_000);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalArgumentException.class, () -> breaker.call(() -> {
+                throw new IllegalArgumentException("bad request");
+            }, IO_FAILURE));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void halfOpenTrialClosesOnSuccessAndReopensOnFailure() throws Exception {
+        CircuitBreaker breaker = breaker(50);
+        for (int i = 0; i < 4; i++) {
+            fail(breaker);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        Thread.sleep(80);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        // La segunda apertura dura el doble (100 ms)
+        Thread.sleep(150);
+        assertEquals("ok", breaker.call(() -> "ok", IO_FAILURE));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+}